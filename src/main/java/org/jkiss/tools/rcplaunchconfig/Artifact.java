@@ -16,8 +16,21 @@
  */
 package org.jkiss.tools.rcplaunchconfig;
 
+import jakarta.annotation.Nullable;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 
-public record Artifact(String classifier, String id, Version version){
+/**
+ * Entry of the p2 artifacts index, with the download size and sha-256 checksum when the repository publishes them
+ */
+public record Artifact(
+    String classifier,
+    String id,
+    Version version,
+    @Nullable Long downloadSize,
+    @Nullable String checksum
+) {
+
+    public static final String BUNDLE_CLASSIFIER = "osgi.bundle";
+    public static final String FEATURE_CLASSIFIER = "org.eclipse.update.feature";
 
 }
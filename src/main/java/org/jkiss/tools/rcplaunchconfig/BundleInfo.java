@@ -67,6 +67,7 @@ public class BundleInfo implements ModuleInfo {
     protected Path path;
     private final String bundleName;
     private final String bundleVersion;
+    private volatile Version version;
     protected List<String> classpathLibs;
     private final List<Pair<String, VersionRange>> requireBundles;
     private final Set<Pair<String, Version>> exportPackages;
@@ -77,6 +78,8 @@ public class BundleInfo implements ModuleInfo {
     // Thus we need all versions
     private String additionalVersions;
     private final Set<BundleInfo> fragments = new HashSet<>();
+    // Bundle identity is its location, name, version and start level, the rest is derived from the manifest
+    private final int identityHash;
 
     public BundleInfo(
         @Nullable Path path,
@@ -101,6 +104,8 @@ public class BundleInfo implements ModuleInfo {
         this.startLevel = startLevel;
         this.fragmentHost = fragmentHost;
         this.requireFragments = requiredFragments;
+        // path is not hashed, remote bundles assign it after construction
+        this.identityHash = Objects.hash(bundleName, bundleVersion, startLevel);
     }
 
     public @Nullable Path getPath() {
@@ -115,6 +120,18 @@ public class BundleInfo implements ModuleInfo {
         return bundleVersion;
     }
 
+    /**
+     * Parsed bundle version, computed on first access
+     */
+    public @Nonnull Version getVersion() {
+        Version result = version;
+        if (result == null) {
+            result = Version.of(bundleVersion);
+            version = result;
+        }
+        return result;
+    }
+
     public @Nonnull List<String> getClasspathLibs() {
         return classpathLibs;
     }
@@ -170,6 +187,19 @@ public class BundleInfo implements ModuleInfo {
         this.fragments.add(fragment);
     }
 
+    /**
+     * Compares the data read from the manifest, equal bundles may differ in it after the manifest was changed
+     */
+    public boolean hasSameManifest(@Nonnull BundleInfo other) {
+        return classpathLibs.equals(other.classpathLibs) &&
+            requireBundles.equals(other.requireBundles) &&
+            reexportedBundles.equals(other.reexportedBundles) &&
+            exportPackages.equals(other.exportPackages) &&
+            importPackages.equals(other.importPackages) &&
+            requireFragments.equals(other.requireFragments) &&
+            Objects.equals(fragmentHost, other.fragmentHost);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -179,19 +209,16 @@ public class BundleInfo implements ModuleInfo {
             return false;
         }
         BundleInfo that = (BundleInfo) o;
-        return Objects.equals(getPath(), that.getPath()) &&
+        return identityHash == that.identityHash &&
             Objects.equals(getBundleName(), that.getBundleName()) &&
             Objects.equals(getBundleVersion(), that.getBundleVersion()) &&
-            Objects.equals(getClasspathLibs(), that.getClasspathLibs()) &&
-            Objects.equals(getRequireBundles(), that.getRequireBundles()) &&
-            Objects.equals(getExportPackages(), that.getExportPackages()) &&
-            Objects.equals(getImportPackages(), that.getImportPackages()) &&
+            Objects.equals(getPath(), that.getPath()) &&
             Objects.equals(getStartLevel(), that.getStartLevel());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getPath(), getBundleName(), getBundleVersion(), getClasspathLibs(), getRequireBundles(), getExportPackages(), getImportPackages(), getStartLevel());
+        return identityHash;
     }
 
     @Override
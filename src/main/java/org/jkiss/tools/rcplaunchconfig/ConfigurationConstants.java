@@ -28,11 +28,14 @@ public class ConfigurationConstants {
     public static final String TEST_BUNDLE_PATHS_PARAM = "testBundlePaths";
     public static final String ADDITIONAL_LIBRARIES_PATHS_PARAM = "additionalLibrariesPaths";
     public static final String IDEA_CONFIGURATION_FILES_PATHS_PARAM = "ideaConfigurationFilesPaths";
+    public static final String EXCLUDED_PACKAGES_PARAM = "excludedPackages";
+    public static final String WORKSPACE_BUNDLES_PARAM = "workspaceBundles";
 
     public static final String PLUGINS_FOLDER = "plugins";
 
     public static final String DEFAULT_WORKSPACE_LOCATION = "dbeaver-workspace/dependencies/";
 
     public static final String FEATURES_FOLDER = "features";
+    public static final String MANIFEST_CACHE_FILE = ".manifest-cache";
     public static final String TEST_LIBRARIES = "testLibraries";
 }
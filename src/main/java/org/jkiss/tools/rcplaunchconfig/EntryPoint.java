@@ -17,6 +17,8 @@
 package org.jkiss.tools.rcplaunchconfig;
 
 import ch.qos.logback.classic.Level;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.exception.RepositoryInitialisationError;
 import org.jkiss.tools.rcplaunchconfig.producers.ConfigIniProducer;
@@ -24,7 +26,13 @@ import org.jkiss.tools.rcplaunchconfig.producers.DevPropertiesProducer;
 import org.jkiss.tools.rcplaunchconfig.producers.iml.IMLConfigurationProducer;
 import org.jkiss.tools.rcplaunchconfig.resolvers.DynamicImportsResolver;
 import org.jkiss.tools.rcplaunchconfig.resolvers.FeatureResolver;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestCache;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ParallelGraphResolver;
+import org.jkiss.tools.rcplaunchconfig.resolvers.PackageChecker;
 import org.jkiss.tools.rcplaunchconfig.resolvers.PluginResolver;
+import org.jkiss.tools.rcplaunchconfig.resolvers.PluginsExportIndex;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ResolutionGraph;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ResolutionTrace;
 import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
 import org.jkiss.tools.rcplaunchconfig.xml.CategoryXMLFileParser;
 import org.jkiss.tools.rcplaunchconfig.xml.XmlReader;
@@ -36,16 +44,19 @@ import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class EntryPoint {
     private static final Logger log = LoggerFactory.getLogger(EntryPoint.class);
 
+    private static final long WATCH_SHUTDOWN_TIMEOUT_SEC = 30;
+
     public static void main(String[] args) throws IOException, XMLStreamException, RepositoryInitialisationError {
         try {
             launchGenerate(args);
@@ -76,6 +87,14 @@ public class EntryPoint {
 
         var pathsManager = PathsManager.INSTANCE;
         pathsManager.init(settings, params.projectsFolderPath, params.eclipsePath);
+        PackageChecker.INSTANCE.init(settings);
+        DevPropertiesProducer.init(settings);
+        ManifestCache.INSTANCE.load(pathsManager.getEclipsePath().resolve(ConfigurationConstants.MANIFEST_CACHE_FILE));
+        log.info("Indexing bundles and features locations...");
+        forkJoinPool.submit(() -> FileUtils.indexFolders(pathsManager.getBundlesLocations())).join();
+        forkJoinPool.submit(() -> FeaturesStorage.INSTANCE.importData(pathsManager.getFeaturesLocations())).join();
+        log.info("Indexing Eclipse plugins exported packages...");
+        forkJoinPool.submit(() -> PluginsExportIndex.INSTANCE.build(pathsManager.getEclipsePluginsPath())).join();
         P2RepositoryManager p2RepositoryManager = P2RepositoryManager.INSTANCE;
         p2RepositoryManager.init(settings, params.eclipseVersion);
         if (log.isDebugEnabled()) {
@@ -95,111 +114,247 @@ public class EntryPoint {
                 bundlesPaths
             );
         }
-        List<ResultInfo> executionResults = forkJoinPool.submit(() -> pathsManager.getProductsPathsAndWorkDirs().entrySet().parallelStream().map((productPath) -> {
+        String inputsHash = ProductFingerprint.computeInputsHash(params, settings, p2RepositoryManager.getLookupCache());
+        ResolutionGraph.INSTANCE.reset();
+        // optional features do not depend on products, so they are resolved alongside them
+        ForkJoinTask<Result> additionalRepositoriesTask = forkJoinPool.submit(
+            () -> resolveAdditionalRepositories(pathsManager.getAdditionalRepositoriesPaths()));
+        List<ResultInfo> executionResults = generateProducts(params, forkJoinPool, pathsManager.getProductsPathsAndWorkDirs(), inputsHash);
+        log.info("Product generation completed for all products!");
+        List<Path> additionalLibraries = PathsManager.INSTANCE.getAdditionalLibraries();
+        log.info("Appending additional libraries...");
+        if (additionalLibraries != null) {
+            for (Path additionalLibrary : additionalLibraries) {
+                FileUtils.copyFolder(additionalLibrary, PathsManager.INSTANCE.getEclipsePath(), false);
+            }
+        }
+        log.info("Generating additional repositories configuration...");
+        Result additionalRepositoriesResult = additionalRepositoriesTask.join();
+        if (additionalRepositoriesResult != null) {
+            log.debug(additionalRepositoriesResult.getBundlesByNames().size() + " additional bundles to resolve found");
+            IMLConfigurationProducer.INSTANCE.generateIMLFiles(additionalRepositoriesResult, null);
+        }
+        log.info("Producing final IML configuration...");
+        IMLConfigurationProducer.INSTANCE.generateImplConfiguration();
+        ManifestCache.INSTANCE.save();
+        log.info("Package checks: {}, bundle origin checks: {}", PackageChecker.INSTANCE.getHits(), DevPropertiesProducer.getBundleOriginHits());
+        log.info("Execution completed!");
+        if (params.watch) {
+            watchWorkspace(params, forkJoinPool, executionResults, inputsHash);
+        }
+        forkJoinPool.shutdown();
+    }
+
+    private static List<ResultInfo> generateProducts(
+        @Nonnull Params params,
+        @Nonnull ForkJoinPool forkJoinPool,
+        @Nonnull Map<Path, String> productsPathsAndWorkDirs,
+        @Nonnull String inputsHash
+    ) {
+        P2RepositoryManager p2RepositoryManager = P2RepositoryManager.INSTANCE;
+        List<ResultInfo> executionResults = forkJoinPool.submit(() -> productsPathsAndWorkDirs.entrySet().parallelStream().map((productPath) -> {
             log.info("Starting generation for: %s" + productPath);
             log.debug("Thread name %s used for %s".formatted(Thread.currentThread().getName(), productPath));
+            var resultPath = params.resultFilesPath.resolve(productPath.getKey().getFileName());
             try {
+                ProductFingerprint fingerprint = ProductFingerprint.read(resultPath);
+                // trace flag is a part of the inputs hash, trace of the skipped product is left from its last generation
+                if (fingerprint != null && fingerprint.isUpToDate(inputsHash)) {
+                    log.info("Product %s is up to date, generation skipped".formatted(productPath.getKey()));
+                    IMLConfigurationProducer.INSTANCE.addUnchangedProduct(fingerprint);
+                    return new ResultInfo(productPath, null, resultPath, fingerprint);
+                }
                 Result result = new Result();
+                result.getTrace().setEnabled(params.trace);
                 result.setWorkDir(productPath.getValue());
                 result.setProductPath(productPath.getKey());
-                FeatureResolver.addNewFeatureProject(result.getProductPath());
+                ParallelGraphResolver.resolveProductGraph(result, productPath.getKey().toFile());
                 XmlReader.INSTANCE.parseXmlFile(result, productPath.getKey().toFile());
                 new DynamicImportsResolver()
                     .start(result, p2RepositoryManager.getLookupCache());
 
-                var resultPath = params.resultFilesPath;
-                resultPath = resultPath.resolve(productPath.getKey().getFileName());
                 try {
-                    Files.createDirectories(resultPath.getParent());
+                    Files.createDirectories(resultPath);
                 } catch (Throwable throwable) {
-                    log.debug("Error creating target parent directories for %s".formatted(resultPath));
-                }
-                try {
-                    FileUtils.removeAllFromDir(resultPath);
-                } catch (Throwable e) {
-                    log.debug("Error deleting target folder for %s".formatted(resultPath), e);
+                    log.debug("Error creating target directories for %s".formatted(resultPath));
                 }
                 log.info("Product generation for %s completed".formatted(result.getProductId()));
                 log.debug("Thread %s finished execution".formatted(Thread.currentThread().getName()));
-                return new ResultInfo(productPath, result, resultPath);
+                return new ResultInfo(productPath, result, resultPath, null);
             } catch (XMLStreamException | IOException e) {
                 throw new RuntimeException(e);
             }
         }).collect(Collectors.toList())).join();
-        forkJoinPool.submit(() -> {
-            executionResults.parallelStream().forEach((executionResult) -> {
+        return forkJoinPool.submit(() -> executionResults.parallelStream().map((executionResult) -> {
+            if (executionResult.result() == null) {
+                return executionResult;
+            }
+            try {
+                Path resultPath = executionResult.resultPath();
+                Result result = executionResult.result;
+                Map.Entry<Path, String> productPath = executionResult.productPath();
+                Set<Path> outputFiles = new HashSet<>();
+                {
+                    // dev props
+                    var devProperties = DevPropertiesProducer.generateDevProperties(result.getBundlesByNames().values());
+                    FileUtils.writePropertiesFile(resultPath.resolve("dev.properties"), devProperties);
+                    outputFiles.add(resultPath.resolve("dev.properties"));
+                }
+                {
+                    // config ini
+                    var configIni = ConfigIniProducer.generateConfigIni(
+                        result.getOsgiSplashPath(),
+                        result.getBundlesByNames().values()
+                    );
+                    FileUtils.writePropertiesFile(resultPath.resolve("config.ini"), configIni);
+                    outputFiles.add(resultPath.resolve("config.ini"));
+                }
+                {
+                    // debug launch
+                    String launchConfig = ConfigIniProducer.generateProductLaunch(params, result);
+                    FileUtils.writeIfChanged(
+                        productPath.getKey().getParent().resolve(result.getProductName() + ".product.launch"),
+                        launchConfig);
+                }
+                {
+                    log.info("Starting to load test bundles for %s...".formatted(result.getProductName()));
+                    PluginResolver.resolveTestBundlesAndLibraries(result);
+                }
+                {
+                    IMLConfigurationProducer.INSTANCE.generateIMLFiles(result, resultPath);
+                }
+                if (result.getTrace().isEnabled()) {
+                    Path tracePath = resultPath.resolve(ResolutionTrace.REPORT_FILE_NAME);
+                    FileUtils.writeIfChanged(tracePath, result.getTrace().toCsv());
+                    outputFiles.add(tracePath);
+                }
+                log.info("Resolution statistics for %s: %s".formatted(result.getProductName(), result.getStatistics()));
+                ProductFingerprint fingerprint = ProductFingerprint.create(inputsHash, productPath.getKey(), result);
+                outputFiles.add(fingerprint.write(resultPath));
+                // remove files left from the previous generation instead of cleaning the whole folder
+                FileUtils.removeStaleFiles(resultPath, outputFiles);
+                return new ResultInfo(productPath, result, resultPath, fingerprint);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).collect(Collectors.toList())).join();
+    }
+
+    /**
+     * Resolves features listed in category.xml files of the optional feature repositories.
+     * Category files are read in parallel, features are resolved in the order of the files.
+     *
+     * @return result with the optional features, null if there are no repositories
+     */
+    @Nullable
+    private static Result resolveAdditionalRepositories(@Nullable List<Path> repositoriesPaths) {
+        if (CommonUtils.isEmpty(repositoriesPaths)) {
+            return null;
+        }
+        List<Path> categoryXMLs = new ArrayList<>();
+        for (Path additionalRepositoriesPath : repositoriesPaths) {
+            try (Stream<Path> stream = Files.walk(additionalRepositoriesPath)) {
+                stream.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().equals(CategoryXMLFileParser.CATEGORY_XML_FILENAME))
+                    .forEach(categoryXMLs::add);
+            } catch (IOException e) {
+                log.error("Error reading the repository " + e);
+            }
+        }
+        Set<String> featureIds = categoryXMLs.parallelStream()
+            .map(CategoryXMLFileParser::readFeatureIds)
+            .flatMap(List::stream)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        Result result = new Result();
+        result.setProductPath(Path.of("/"));
+        ParallelGraphResolver.resolveFeaturesGraph(result, featureIds);
+        for (String featureId : featureIds) {
+            try {
+                FeatureResolver.resolveFeatureDependencies(result, featureId);
+            } catch (IOException | XMLStreamException e) {
+                log.error("Error resolving optional feature '" + featureId + "'", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Regenerates configuration of the products affected by changes in the workspace.
+     * Runs until the process is interrupted (the shutdown hook lets the current regeneration finish)
+     * or no workspace folders are left to watch.
+     */
+    private static void watchWorkspace(
+        @Nonnull Params params,
+        @Nonnull ForkJoinPool forkJoinPool,
+        @Nonnull List<ResultInfo> executionResults,
+        @Nonnull String inputsHash
+    ) throws IOException {
+        var pathsManager = PathsManager.INSTANCE;
+        // downloads, caches and generated files change during regeneration and must not trigger it again
+        List<Path> ignoredPaths = List.of(
+            pathsManager.getEclipsePath(),
+            pathsManager.getImlModulesPath(),
+            params.resultFilesPath
+        );
+        CountDownLatch stopped = new CountDownLatch(1);
+        try (var watcher = new WorkspaceWatcher(ignoredPaths)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
-                    Path resultPath = executionResult.resultPath();
-                    Result result = executionResult.result;
-                    Map.Entry<Path, String> productPath = executionResult.productPath();
-                    {
-                        // dev props
-                        var devProperties = DevPropertiesProducer.generateDevProperties(result.getBundlesByNames().values());
-                        FileUtils.writePropertiesFile(resultPath.resolve("dev.properties"), devProperties);
-                    }
-                    {
-                        // config ini
-                        var configIni = ConfigIniProducer.generateConfigIni(
-                            result.getOsgiSplashPath(),
-                            result.getBundlesByNames().values()
-                        );
-                        FileUtils.writePropertiesFile(resultPath.resolve("config.ini"), configIni);
-                    }
-                    {
-                        // debug launch
-                        String launchConfig = ConfigIniProducer.generateProductLaunch(params, result);
-                        Files.writeString(
-                            productPath.getKey().getParent().resolve(result.getProductName() + ".product.launch"),
-                            launchConfig);
-                    }
-                    {
-                        log.info("Starting to load test bundles for %s...".formatted(result.getProductName()));
-                        PluginResolver.resolveTestBundlesAndLibraries(result);
-                    }
-                    {
-                        IMLConfigurationProducer.INSTANCE.generateIMLFiles(result, resultPath);
-                    }
+                    watcher.stop();
+                    stopped.await(WATCH_SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
                 } catch (IOException e) {
-                    throw new RuntimeException(e);
+                    log.debug("Error closing workspace watcher", e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            });
-        }).join();
-        log.info("Product generation completed for all products!");
-        forkJoinPool.shutdown();
-        List<Path> additionalLibraries = PathsManager.INSTANCE.getAdditionalLibraries();
-        log.info("Appending additional libraries...");
-        if (additionalLibraries != null) {
-            for (Path additionalLibrary : additionalLibraries) {
-                FileUtils.copyFolder(additionalLibrary, PathsManager.INSTANCE.getEclipsePath(), false);
+            }, "workspace-watcher-shutdown"));
+            watcher.registerLocations(Stream.concat(
+                pathsManager.getBundlesLocations().stream(),
+                pathsManager.getFeaturesLocations().stream()
+            ).toList());
+            for (ResultInfo executionResult : executionResults) {
+                watcher.registerProduct(executionResult.productPath().getKey(), executionResult.fingerprint());
             }
-        }
-        log.info("Resolving additional repositories...");
-        if (!CommonUtils.isEmpty(pathsManager.getAdditionalRepositoriesPaths())) {
-            Result result = new Result();
-            result.setProductPath(Path.of("/"));
-            FeatureResolver.addNewFeatureProject(result.getProductPath());
-            for (Path additionalRepositoriesPath : pathsManager.getAdditionalRepositoriesPaths()) {
-                try (Stream<Path> stream = Files.walk(additionalRepositoriesPath)) {
-                    List<Path> categoryXMLS = stream.filter(Files::isRegularFile)
-                        .filter(path -> path.getFileName().toString().equals("category.xml"))
-                        .toList();
-                    for (Path categoryXML : categoryXMLS) {
-                        log.debug("Generating config for " + categoryXML);
-                        CategoryXMLFileParser.parseCategoryXML(result, categoryXML);
+            while (true) {
+                log.info("Watching for changes...");
+                WorkspaceWatcher.Changes changes = watcher.awaitChanges();
+                if (changes == null) {
+                    log.info("Workspace watching stopped");
+                    break;
+                }
+                Map<Path, String> productsToRegenerate = new LinkedHashMap<>();
+                for (var productPath : pathsManager.getProductsPathsAndWorkDirs().entrySet()) {
+                    if (changes.products().contains(productPath.getKey())) {
+                        productsToRegenerate.put(productPath.getKey(), productPath.getValue());
                     }
-                } catch (IOException e) {
-                    log.error("Error reading the repository " + e);
+                }
+                log.info("Regenerating configuration for " + productsToRegenerate.keySet());
+                try {
+                    IMLConfigurationProducer.INSTANCE.resetGeneratedFiles();
+                    if (changes.locationsChanged()) {
+                        // added or removed bundles may satisfy any requirement
+                        ResolutionGraph.INSTANCE.reset();
+                    } else {
+                        ResolutionGraph.INSTANCE.invalidate(changes.files());
+                    }
+                    for (ResultInfo executionResult : generateProducts(params, forkJoinPool, productsToRegenerate, inputsHash)) {
+                        watcher.registerProduct(executionResult.productPath().getKey(), executionResult.fingerprint());
+                    }
+                    IMLConfigurationProducer.INSTANCE.generateImplConfiguration();
+                    ManifestCache.INSTANCE.save();
+                    log.info("Regeneration completed!");
+                } catch (RuntimeException e) {
+                    log.error("Error regenerating configuration", e);
                 }
             }
-            log.debug(result.getBundlesByNames().size() + " additional bundles to resolve found");
-            IMLConfigurationProducer.INSTANCE.generateIMLFiles(result, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
         }
-        log.info("Producing final IML configuration...");
-        IMLConfigurationProducer.INSTANCE.generateImplConfiguration();
-        log.info("Execution completed!");
     }
 
-    private record ResultInfo(Map.Entry<Path, String> productPath, Result result, Path resultPath) {
+    private record ResultInfo(Map.Entry<Path, String> productPath, Result result, Path resultPath, ProductFingerprint fingerprint) {
 
     }
 }
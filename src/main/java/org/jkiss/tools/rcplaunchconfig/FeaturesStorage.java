@@ -18,44 +18,131 @@ package org.jkiss.tools.rcplaunchconfig;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
+import org.jkiss.tools.rcplaunchconfig.util.FolderIndex;
+import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
-public class FeaturesStorage {
+/**
+ * Index of features in the features locations: feature id -> versions -> feature.xml.
+ * Built once in parallel, features downloaded from p2 repositories are registered incrementally.
+ */
+public enum FeaturesStorage {
+    INSTANCE;
 
     public static final Logger log = LoggerFactory.getLogger(FeaturesStorage.class);
 
     private static final String FEATURES_XML_FILENAME = "feature.xml";
 
-    private final Map<String, File> xmlFilesByFeaturesNames = new LinkedHashMap<>();
+    private static final Comparator<FeatureEntry> VERSION_COMPARATOR =
+        Comparator.comparing(FeatureEntry::version, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Map<Path, Map<String, List<FeatureEntry>>> featuresByLocations = new ConcurrentHashMap<>();
+    private List<Path> locations = List.of();
+
+    public record FeatureEntry(@Nonnull String featureId, @Nullable Version version, @Nonnull File featureXmlFile) {
+    }
 
     public void importData(@Nonnull Collection<Path> featuresPaths) {
-        for (var featuresFolderPath : featuresPaths) {
-            var folders = featuresFolderPath.toFile().listFiles(File::isDirectory);
-            if (folders == null) {
-                log.warn("No folders was found in '{}'", featuresFolderPath);
-                return;
-            }
-            for (var folder : folders) {
-                var featureXmlFiles = folder.listFiles((dir, fileName) -> fileName.equals(FEATURES_XML_FILENAME));
-                if (featureXmlFiles == null || featureXmlFiles.length == 0) {
-                    log.warn("'{}' is not found in '{}'", FEATURES_XML_FILENAME, folder.getPath());
-                    return;
-                } else if (featureXmlFiles.length > 1) {
-                    log.warn("Multiple '{}' was found in '{}'", FEATURES_XML_FILENAME, folder.getPath());
+        locations = featuresPaths.stream().map(FeaturesStorage::normalize).distinct().toList();
+        locations.parallelStream().forEach(this::indexLocation);
+    }
+
+    /**
+     * Rescans the location, does nothing if it is not a features location
+     */
+    public void indexLocation(@Nonnull Path location) {
+        Path featuresFolderPath = normalize(location);
+        if (!locations.contains(featuresFolderPath)) {
+            return;
+        }
+        var folders = featuresFolderPath.toFile().listFiles(File::isDirectory);
+        if (folders == null) {
+            log.warn("No folders was found in '{}'", featuresFolderPath);
+            featuresByLocations.put(featuresFolderPath, Map.of());
+            return;
+        }
+        Map<String, List<FeatureEntry>> features = Arrays.stream(folders)
+            .parallel()
+            .map(FeaturesStorage::readFeatureEntry)
+            .filter(Objects::nonNull)
+            .collect(Collectors.groupingBy(FeatureEntry::featureId, ConcurrentHashMap::new, Collectors.toList()));
+        features.replaceAll((featureId, entries) -> sortByVersion(entries));
+        featuresByLocations.put(featuresFolderPath, features);
+    }
+
+    /**
+     * Adds feature downloaded to the features location
+     *
+     * @return registered feature or null if the folder doesn't contain feature.xml
+     */
+    @Nullable
+    public FeatureEntry register(@Nonnull Path featureFolder) {
+        FeatureEntry featureEntry = readFeatureEntry(featureFolder.toFile());
+        if (featureEntry == null) {
+            return null;
+        }
+        Path location = normalize(featureFolder).getParent();
+        featuresByLocations.computeIfAbsent(location, it -> new ConcurrentHashMap<>())
+            .merge(featureEntry.featureId(), List.of(featureEntry), (entries, newEntries) -> {
+                if (entries.stream().anyMatch(it -> it.featureXmlFile().equals(featureEntry.featureXmlFile()))) {
+                    return entries;
                 }
-                xmlFilesByFeaturesNames.put(folder.getName(), featureXmlFiles[0]);
+                List<FeatureEntry> result = new ArrayList<>(entries);
+                result.addAll(newEntries);
+                return sortByVersion(result);
+            });
+        return featureEntry;
+    }
+
+    /**
+     * @return preferred version of the feature from each location which contains it, in the locations order
+     */
+    @Nonnull
+    public List<FeatureEntry> getFeatures(@Nonnull String featureId) {
+        boolean preferOlder = FileUtils.preferOlderBundles.contains(featureId);
+        List<FeatureEntry> result = new ArrayList<>();
+        for (Path location : locations) {
+            List<FeatureEntry> entries = featuresByLocations.getOrDefault(location, Map.of()).get(featureId);
+            if (entries != null && !entries.isEmpty()) {
+                result.add(preferOlder ? entries.get(0) : entries.get(entries.size() - 1));
             }
         }
+        return result;
+    }
+
+    @Nullable
+    private static FeatureEntry readFeatureEntry(@Nonnull File folder) {
+        File featureXmlFile = new File(folder, FEATURES_XML_FILENAME);
+        if (!featureXmlFile.isFile()) {
+            log.debug("'{}' is not found in '{}'", FEATURES_XML_FILENAME, folder.getPath());
+            return null;
+        }
+        Version version;
+        try {
+            version = FileUtils.extractVersion(folder);
+        } catch (IllegalArgumentException e) {
+            version = null;
+        }
+        return new FeatureEntry(FolderIndex.extractName(folder.getName()), version, featureXmlFile);
+    }
+
+    @Nonnull
+    private static List<FeatureEntry> sortByVersion(@Nonnull List<FeatureEntry> entries) {
+        List<FeatureEntry> result = new ArrayList<>(entries);
+        result.sort(VERSION_COMPARATOR);
+        return List.copyOf(result);
     }
 
-    public @Nullable File getFeatureXml(@Nonnull String featureName) {
-        return xmlFilesByFeaturesNames.get(featureName);
+    @Nonnull
+    private static Path normalize(@Nonnull Path path) {
+        return path.toAbsolutePath().normalize();
     }
 }
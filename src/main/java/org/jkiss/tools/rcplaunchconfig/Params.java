@@ -46,6 +46,12 @@ public class Params {
     @Option(names = "-debug", description = "More verbose output")
     public boolean debug;
 
+    @Option(names = "-watch", description = "Keep running and regenerate configuration of products affected by workspace changes")
+    public boolean watch;
+
+    @Option(names = "-trace", description = "Write resolution trace report for each product")
+    public boolean trace;
+
 
     public @Nonnull ParseResult init(String[] args) {
         return new CommandLine(this)
@@ -0,0 +1,263 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
+import org.jkiss.tools.rcplaunchconfig.producers.DevPropertiesProducer;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestParser;
+import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
+import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
+import org.jkiss.utils.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Inputs of the generated product configuration: product file, manifests and feature.xml files of its closure,
+ * state of bundles and features locations, settings, command line parameters and repositories content.
+ * Stored next to the generated files, unchanged fingerprint means the product may be skipped.
+ * The fingerprint also keeps what the product shares with others: its modules and Import-Package providers.
+ */
+public class ProductFingerprint {
+    private static final Logger log = LoggerFactory.getLogger(ProductFingerprint.class);
+
+    private static final String FINGERPRINT_FILENAME = ".fingerprint";
+    private static final String BUILD_PROPERTIES_FILENAME = "build.properties";
+
+    private static final String INPUTS_PREFIX = "inputs=";
+    private static final String FILE_PREFIX = "file=";
+    private static final String MODULE_PREFIX = "module=";
+    private static final String IMPORT_PREFIX = "import=";
+    private static final String MISSING_FILE_STATE = "-";
+
+    private final String inputsHash;
+    private final Map<Path, String> fileStates;
+    private final Set<String> moduleNames;
+    private final List<PackageImport> packageImports;
+
+    /**
+     * Provider of the Import-Package entry selected for the product
+     */
+    public record PackageImport(@Nonnull String packageName, @Nullable VersionRange range, @Nonnull Path providerPath) {
+        @Nonnull
+        public Pair<String, VersionRange> importPackage() {
+            return new Pair<>(packageName, range);
+        }
+    }
+
+    private ProductFingerprint(
+        @Nonnull String inputsHash,
+        @Nonnull Map<Path, String> fileStates,
+        @Nonnull Set<String> moduleNames,
+        @Nonnull List<PackageImport> packageImports
+    ) {
+        this.inputsHash = inputsHash;
+        this.fileStates = fileStates;
+        this.moduleNames = moduleNames;
+        this.packageImports = packageImports;
+    }
+
+    /**
+     * @return hash of the inputs shared by all products
+     */
+    @Nonnull
+    public static String computeInputsHash(
+        @Nonnull Params params,
+        @Nonnull Properties settings,
+        @Nonnull P2BundleLookupCache lookupCache
+    ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            new TreeMap<>(settings).forEach((key, value) -> digest.update((key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8)));
+            digest.update((params.eclipseVersion + "\n").getBytes(StandardCharsets.UTF_8));
+            // locations decide where files are written and how generated files refer to each other
+            PathsManager pathsManager = PathsManager.INSTANCE;
+            for (Path path : List.of(
+                params.projectsFolderPath,
+                pathsManager.getEclipsePath(),
+                pathsManager.getImlModulesPath(),
+                params.resultFilesPath
+            )) {
+                digest.update((path.toAbsolutePath().normalize() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update(("trace=" + params.trace + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(lookupCache.getContentChecksum().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nonnull
+    public static ProductFingerprint create(@Nonnull String inputsHash, @Nonnull Path productPath, @Nonnull Result result) {
+        Set<Path> files = new LinkedHashSet<>();
+        Set<String> moduleNames = new LinkedHashSet<>();
+        files.add(productPath);
+        PathsManager pathsManager = PathsManager.INSTANCE;
+        files.addAll(pathsManager.getBundlesLocations());
+        files.addAll(pathsManager.getFeaturesLocations());
+        for (Set<BundleInfo> bundles : result.getBundlesByNames().values()) {
+            for (BundleInfo bundleInfo : bundles) {
+                Path bundlePath = bundleInfo.getPath();
+                if (bundlePath != null) {
+                    if (Files.isDirectory(bundlePath)) {
+                        files.add(bundlePath.resolve(ManifestParser.MANIFEST_PATH));
+                        files.add(bundlePath.resolve(BUILD_PROPERTIES_FILENAME));
+                    } else {
+                        files.add(bundlePath);
+                    }
+                }
+                if (DevPropertiesProducer.isBundleAcceptable(bundleInfo.getBundleName())) {
+                    moduleNames.add(bundleInfo.getModuleName());
+                }
+            }
+        }
+        for (FeatureInfo featureInfo : result.getResolvedFeatures().values()) {
+            files.add(featureInfo.getFeatureXmlFile());
+            if (DevPropertiesProducer.isBundleAcceptable(featureInfo.getFeatureName())) {
+                moduleNames.add(featureInfo.getModuleName());
+            }
+        }
+        List<PackageImport> packageImports = new ArrayList<>();
+        for (var providers : result.getPackageProviders().entrySet()) {
+            for (BundleInfo provider : providers.getValue()) {
+                if (provider.getPath() != null) {
+                    packageImports.add(new PackageImport(providers.getKey().getFirst(), providers.getKey().getSecond(), provider.getPath()));
+                }
+            }
+        }
+        Map<Path, String> fileStates = new LinkedHashMap<>();
+        for (Path file : files) {
+            fileStates.put(file, getFileState(file));
+        }
+        return new ProductFingerprint(inputsHash, fileStates, moduleNames, packageImports);
+    }
+
+    /**
+     * @return fingerprint stored in the result folder or null if it is missing or can't be read
+     */
+    @Nullable
+    public static ProductFingerprint read(@Nonnull Path resultPath) {
+        Path fingerprintFile = resultPath.resolve(FINGERPRINT_FILENAME);
+        if (!Files.exists(fingerprintFile)) {
+            return null;
+        }
+        try {
+            String inputsHash = null;
+            Map<Path, String> fileStates = new LinkedHashMap<>();
+            Set<String> moduleNames = new LinkedHashSet<>();
+            List<PackageImport> packageImports = new ArrayList<>();
+            for (String line : Files.readAllLines(fingerprintFile, StandardCharsets.UTF_8)) {
+                if (line.startsWith(INPUTS_PREFIX)) {
+                    inputsHash = line.substring(INPUTS_PREFIX.length());
+                } else if (line.startsWith(FILE_PREFIX)) {
+                    String[] stateAndPath = line.substring(FILE_PREFIX.length()).split("\t", 2);
+                    fileStates.put(Path.of(stateAndPath[1]), stateAndPath[0]);
+                } else if (line.startsWith(MODULE_PREFIX)) {
+                    moduleNames.add(line.substring(MODULE_PREFIX.length()));
+                } else if (line.startsWith(IMPORT_PREFIX)) {
+                    String[] packageRangeAndPath = line.substring(IMPORT_PREFIX.length()).split("\t", 3);
+                    packageImports.add(new PackageImport(
+                        packageRangeAndPath[0],
+                        packageRangeAndPath[1].isEmpty() ? null : VersionRange.fromString(packageRangeAndPath[1]),
+                        Path.of(packageRangeAndPath[2])));
+                }
+            }
+            if (inputsHash == null) {
+                return null;
+            }
+            return new ProductFingerprint(inputsHash, fileStates, moduleNames, packageImports);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error reading fingerprint '{}', product will be regenerated", fingerprintFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return path of the written fingerprint file
+     */
+    @Nonnull
+    public Path write(@Nonnull Path resultPath) throws IOException {
+        List<String> lines = new ArrayList<>(fileStates.size() + moduleNames.size() + packageImports.size() + 1);
+        lines.add(INPUTS_PREFIX + inputsHash);
+        fileStates.forEach((file, state) -> lines.add(FILE_PREFIX + state + "\t" + file));
+        moduleNames.forEach(it -> lines.add(MODULE_PREFIX + it));
+        for (PackageImport packageImport : packageImports) {
+            lines.add(IMPORT_PREFIX + packageImport.packageName() + "\t"
+                + (packageImport.range() == null ? "" : packageImport.range()) + "\t"
+                + packageImport.providerPath());
+        }
+        Path fingerprintFile = resultPath.resolve(FINGERPRINT_FILENAME);
+        FileUtils.writeIfChanged(fingerprintFile, String.join("\n", lines) + "\n");
+        return fingerprintFile;
+    }
+
+    /**
+     * @return true if the shared inputs and all files are the same as at the time the fingerprint was created
+     */
+    public boolean isUpToDate(@Nonnull String inputsHash) {
+        if (!this.inputsHash.equals(inputsHash)) {
+            return false;
+        }
+        for (Map.Entry<Path, String> fileState : fileStates.entrySet()) {
+            if (!fileState.getValue().equals(getFileState(fileState.getKey()))) {
+                log.debug("'{}' changed", fileState.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    public Set<Path> getFiles() {
+        return fileStates.keySet();
+    }
+
+    @Nonnull
+    public Set<String> getModuleNames() {
+        return moduleNames;
+    }
+
+    @Nonnull
+    public List<PackageImport> getPackageImports() {
+        return packageImports;
+    }
+
+    @Nonnull
+    private static String getFileState(@Nonnull Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            return MISSING_FILE_STATE;
+        } catch (IOException e) {
+            log.debug("Error reading attributes of '{}'", file, e);
+            return MISSING_FILE_STATE + e.getClass().getSimpleName();
+        }
+    }
+}
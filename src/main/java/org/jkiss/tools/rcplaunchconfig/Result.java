@@ -18,6 +18,8 @@ package org.jkiss.tools.rcplaunchconfig;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ResolutionStatistics;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ResolutionTrace;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
 import org.jkiss.utils.Pair;
@@ -28,10 +30,15 @@ import java.util.*;
 
 public class Result {
 
+    // values are BundleVersions
     private final Map<String, Set<BundleInfo>> bundlesByNames = new LinkedHashMap<>();
+    private final Map<String, Set<BundleInfo>> bundlesByNamesView = Collections.unmodifiableMap(bundlesByNames);
 
     private final Map<String, FeatureInfo> resolvedFeatures = new LinkedHashMap<>();
 
+    // providers selected for Import-Package entries of the product bundles
+    private final Map<Pair<String, VersionRange>, Set<BundleInfo>> packageProviders = new LinkedHashMap<>();
+
     private Path osgiSplashPath = null;
     private String productName;
     private String productUID;
@@ -42,27 +49,34 @@ public class Result {
 
     private final ProductLaunchArguments arguments = new ProductLaunchArguments();
 
+    private final ResolutionStatistics statistics = new ResolutionStatistics();
+
+    private final ResolutionTrace trace = new ResolutionTrace();
+
     public FeatureInfo addResolvedFeature(@Nonnull String featureName, File featureXmlFile) {
         return resolvedFeatures.computeIfAbsent(featureName, s -> new FeatureInfo(featureName, featureXmlFile));
     }
 
-    public void addBundle(@Nonnull BundleInfo bundleInfo) {
-        String bundleName = bundleInfo.getBundleName();
-        Set<BundleInfo> oldInfo = bundlesByNames.get(bundleName);
-        if (oldInfo == null) {
-            bundlesByNames.computeIfAbsent(bundleName, it -> new HashSet<>()).add(bundleInfo);
-            return;
-        }
-        Optional<BundleInfo> oldBundle = oldInfo.stream().filter(it -> it.getBundleVersion().equals(bundleInfo.getBundleVersion())).findFirst();
-        if (oldBundle.isEmpty()) {
-            bundlesByNames.computeIfAbsent(bundleName, it -> new HashSet<>()).add(bundleInfo);
-        } else if (oldBundle.get().getBundleVersion().equals(bundleInfo.getBundleVersion())) {
-            // Do nothing
-            if (bundleInfo.getStartLevel() != null && !Objects.equals(oldBundle.get().getStartLevel(), bundleInfo.getStartLevel())) {
-                bundlesByNames.get(bundleName).remove(oldBundle.get());
-                bundlesByNames.get(bundleName).add(bundleInfo);
-            }
+    /**
+     * Adds new bundle version or replaces the same version if start level is specified
+     *
+     * @return true if bundles were changed
+     */
+    public boolean addBundle(@Nonnull BundleInfo bundleInfo) {
+        BundleVersions versions = getVersions(bundleInfo.getBundleName());
+        if (versions == null) {
+            bundlesByNames.put(bundleInfo.getBundleName(), new BundleVersions(bundleInfo));
+            return true;
         }
+        return versions.add(bundleInfo);
+    }
+
+    public void addPackageProvider(@Nonnull Pair<String, VersionRange> importPackage, @Nonnull BundleInfo provider) {
+        packageProviders.computeIfAbsent(importPackage, it -> new LinkedHashSet<>()).add(provider);
+    }
+
+    public @Nonnull Map<Pair<String, VersionRange>, Set<BundleInfo>> getPackageProviders() {
+        return packageProviders;
     }
 
     public boolean isFeatureResolved(@Nonnull String featureName) {
@@ -77,16 +91,24 @@ public class Result {
         return bundlesByNames.get(name);
     }
 
+    /**
+     * Returns the highest resolved version of the bundle which satisfies the range
+     */
     public @Nullable BundleInfo getBundleByInfoAndVersion(Pair<String, VersionRange> bundle) {
-        if (bundlesByNames.get(bundle.getFirst()) == null) {
-            return null;
-        }
-        return bundlesByNames.get(bundle.getFirst()).stream().filter(it -> VersionRange.
-            isVersionsCompatible(bundle.getSecond(), new Version(it.getBundleVersion()))).findFirst().orElse(null);
+        BundleVersions versions = getVersions(bundle.getFirst());
+        return versions == null ? null : versions.findCompatible(bundle.getSecond());
+    }
+
+    @Nullable
+    private BundleVersions getVersions(@Nonnull String bundleName) {
+        return (BundleVersions) bundlesByNames.get(bundleName);
     }
 
+    /**
+     * Read-only view, bundles are added with {@link #addBundle(BundleInfo)}
+     */
     public @Nonnull Map<String, Set<BundleInfo>> getBundlesByNames() {
-        return bundlesByNames;
+        return bundlesByNamesView;
     }
 
     public Map<String, FeatureInfo> getResolvedFeatures() {
@@ -131,6 +153,14 @@ public class Result {
         return arguments;
     }
 
+    public @Nonnull ResolutionStatistics getStatistics() {
+        return statistics;
+    }
+
+    public @Nonnull ResolutionTrace getTrace() {
+        return trace;
+    }
+
     @Nullable
     public String workDir;
 
@@ -149,6 +179,69 @@ public class Result {
         this.applicationId = application;
     }
 
+    /**
+     * Versions of the bundle sorted from the highest one.
+     * Bundles usually have a single version, so array is replaced on modification and iteration never fails.
+     */
+    private static final class BundleVersions extends AbstractSet<BundleInfo> {
+        private BundleInfo[] bundles;
+
+        BundleVersions(@Nonnull BundleInfo bundleInfo) {
+            this.bundles = new BundleInfo[]{bundleInfo};
+        }
+
+        @Override
+        public boolean add(@Nonnull BundleInfo bundleInfo) {
+            BundleInfo[] current = bundles;
+            Version version = bundleInfo.getVersion();
+            int position = 0;
+            while (position < current.length) {
+                int comparison = version.compareTo(current[position].getVersion());
+                if (comparison == 0) {
+                    BundleInfo oldBundle = current[position];
+                    if (bundleInfo.getStartLevel() == null || Objects.equals(oldBundle.getStartLevel(), bundleInfo.getStartLevel())) {
+                        return false;
+                    }
+                    BundleInfo[] updated = current.clone();
+                    updated[position] = bundleInfo;
+                    bundles = updated;
+                    return true;
+                }
+                if (comparison > 0) {
+                    break;
+                }
+                position++;
+            }
+            BundleInfo[] updated = new BundleInfo[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            updated[position] = bundleInfo;
+            System.arraycopy(current, position, updated, position + 1, current.length - position);
+            bundles = updated;
+            return true;
+        }
+
+        @Nullable
+        BundleInfo findCompatible(@Nullable VersionRange range) {
+            for (BundleInfo bundle : bundles) {
+                if (VersionRange.isVersionsCompatible(range, bundle.getVersion())) {
+                    return bundle;
+                }
+            }
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<BundleInfo> iterator() {
+            return Arrays.asList(bundles).iterator();
+        }
+
+        @Override
+        public int size() {
+            return bundles.length;
+        }
+    }
+
     public static class ProductLaunchArguments {
         private String[] vmARGS;
         private String[] vmARGSMac;
@@ -0,0 +1,212 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches manifests, build.properties, feature.xml and product files of the resolved products
+ * and reports products which should be regenerated.
+ * Downloaded dependencies and generated files are never watched, so regeneration does not trigger itself.
+ */
+public class WorkspaceWatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceWatcher.class);
+
+    private static final long QUIET_PERIOD_MS = 300;
+
+    /**
+     * Products to regenerate and the changed files.
+     * Files are not listed if bundles or features were added to or removed from the locations.
+     */
+    public record Changes(@Nonnull Set<Path> products, @Nonnull Set<Path> files, boolean locationsChanged) {
+    }
+
+    private final WatchService watchService;
+    private final List<Path> ignoredPaths;
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private final Map<Path, Path> locations = new HashMap<>();
+    private final Map<Path, Set<Path>> productsByFiles = new HashMap<>();
+    private final Map<Path, Set<Path>> filesByProducts = new LinkedHashMap<>();
+
+    /**
+     * @param ignoredPaths folders with downloaded dependencies, caches and generated files
+     */
+    public WorkspaceWatcher(@Nonnull Collection<Path> ignoredPaths) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.ignoredPaths = ignoredPaths.stream().map(WorkspaceWatcher::normalize).toList();
+    }
+
+    /**
+     * Bundles and features added to or removed from the locations lead to regeneration of all products
+     */
+    public void registerLocations(@Nonnull Collection<Path> locations) throws IOException {
+        for (Path location : locations) {
+            Path directory = normalize(location);
+            if (isIgnored(directory)) {
+                continue;
+            }
+            if (watchDirectory(directory)) {
+                this.locations.put(directory, location);
+            }
+        }
+    }
+
+    /**
+     * Replaces watched files of the product with the inputs from its current fingerprint
+     */
+    public void registerProduct(@Nonnull Path productPath, @Nonnull ProductFingerprint fingerprint) throws IOException {
+        Set<Path> previousFiles = filesByProducts.remove(productPath);
+        if (previousFiles != null) {
+            for (Path file : previousFiles) {
+                Set<Path> products = productsByFiles.get(file);
+                products.remove(productPath);
+                if (products.isEmpty()) {
+                    productsByFiles.remove(file);
+                }
+            }
+        }
+        Set<Path> files = new HashSet<>();
+        for (Path input : fingerprint.getFiles()) {
+            Path file = normalize(input);
+            // locations are watched separately, dependencies are not expected to be edited
+            if (isIgnored(file) || locations.containsKey(file)) {
+                continue;
+            }
+            if (watchDirectory(file.getParent())) {
+                productsByFiles.computeIfAbsent(file, it -> new HashSet<>()).add(productPath);
+                files.add(file);
+            }
+        }
+        filesByProducts.put(productPath, files);
+        log.debug("{} files watched for {}", files.size(), productPath);
+    }
+
+    /**
+     * Blocks until a watched file is changed, events are collected until the workspace stays quiet for a short period
+     *
+     * @return changes to process or null if the watcher was stopped or nothing is left to watch
+     */
+    @Nullable
+    public Changes awaitChanges() throws InterruptedException {
+        while (!watchedDirectories.isEmpty()) {
+            Set<Path> changedProducts = new LinkedHashSet<>();
+            Set<Path> changedFiles = new LinkedHashSet<>();
+            Set<Path> changedLocations = new HashSet<>();
+            boolean overflow = false;
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException e) {
+                return null;
+            }
+            while (key != null) {
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    Set<Path> products = productsByFiles.get(file);
+                    if (products != null) {
+                        log.debug("'{}' changed", file);
+                        changedProducts.addAll(products);
+                        changedFiles.add(file);
+                    }
+                    if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY && locations.containsKey(directory)) {
+                        changedLocations.add(directory);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(directory);
+                }
+                try {
+                    key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+                } catch (ClosedWatchServiceException e) {
+                    return null;
+                }
+            }
+            if (overflow) {
+                changedLocations.addAll(locations.keySet());
+            }
+            if (!changedLocations.isEmpty()) {
+                for (Path location : changedLocations) {
+                    FileUtils.invalidateFolderIndex(locations.get(location));
+                    FeaturesStorage.INSTANCE.indexLocation(location);
+                }
+                return new Changes(new LinkedHashSet<>(filesByProducts.keySet()), Set.of(), true);
+            }
+            if (!changedProducts.isEmpty()) {
+                return new Changes(changedProducts, changedFiles, false);
+            }
+        }
+        log.warn("No workspace folders left to watch");
+        return null;
+    }
+
+    /**
+     * Stops the watcher, a thread waiting for changes receives null. May be called from any thread.
+     */
+    public void stop() throws IOException {
+        watchService.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+    }
+
+    private boolean isIgnored(@Nonnull Path path) {
+        for (Path ignoredPath : ignoredPaths) {
+            if (path.startsWith(ignoredPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean watchDirectory(@Nonnull Path directory) throws IOException {
+        if (watchedDirectories.contains(directory)) {
+            return true;
+        }
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        directory.register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+        watchedDirectories.add(directory);
+        return true;
+    }
+
+    @Nonnull
+    private static Path normalize(@Nonnull Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
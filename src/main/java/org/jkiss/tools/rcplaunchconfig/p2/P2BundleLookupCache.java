@@ -23,7 +23,12 @@ import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.utils.Pair;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.HexFormat;
+import java.util.stream.Stream;
 
 public class P2BundleLookupCache {
     private final MultiValuedMap<String, RemoteP2BundleInfo> remoteBundlesByNames = new ArrayListValuedHashMap<>();
@@ -55,4 +60,24 @@ public class P2BundleLookupCache {
     public void addRemoteFeature(RemoteP2Feature feature) {
         remoteFeaturesByNames.put(feature.name, feature);
     }
+
+    /**
+     * @return checksum of indexed bundles and features, doesn't depend on the time the index files were downloaded
+     */
+    public String getContentChecksum() {
+        var entries = Stream.concat(
+            remoteBundlesByNames.values().stream().map(it -> "bundle:" + it.getBundleName() + "_" + it.getBundleVersion()),
+            remoteFeaturesByNames.values().stream().map(it -> "feature:" + it.getName() + "_" + it.getVersion())
+        ).sorted().toList();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String entry : entries) {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
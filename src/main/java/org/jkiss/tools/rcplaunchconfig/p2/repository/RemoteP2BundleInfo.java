@@ -22,23 +22,20 @@ import org.jkiss.code.Nullable;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.PathsManager;
 import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
-import org.jkiss.tools.rcplaunchconfig.resolvers.DynamicImportsResolver;
 import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestParser;
+import org.jkiss.tools.rcplaunchconfig.resolvers.PluginsExportIndex;
+import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
 import org.jkiss.utils.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
 
 public class RemoteP2BundleInfo extends BundleInfo {
     private static final Logger log = LoggerFactory.getLogger(RemoteP2BundleInfo.class);
@@ -92,32 +89,20 @@ public class RemoteP2BundleInfo extends BundleInfo {
             if (filePath == null) {
                 return false;
             }
-            if (path.toFile().isDirectory()) {
-                File manifestFile = path.resolve(DynamicImportsResolver.MANIFEST_PATH).toFile();
-                if (!manifestFile.exists()) {
-                    log.error("Cannot find '{}'", manifestFile.getPath());
-                    return false;
-                }
-                try (var inputStream = new FileInputStream(manifestFile)) {
-                    var manifest = new Manifest(inputStream);
-                    this.classpathLibs = ManifestParser.parseBundleClasspath(manifest.getMainAttributes());
-                    this.reexportedBundles = ManifestParser.parseReexportedBundles(manifest.getMainAttributes());
-                    this.fragmentHost = ManifestParser.parseFragmentHost(manifest.getMainAttributes());
-                } catch (IOException e) {
-                    log.error("Cannot load bundle %s".formatted(getBundleName()), e);
-                    return false;
-                }
-            } else {
-                try (var jarFile = new JarFile(path.toFile())) {
-                    var manifest = jarFile.getManifest();
-                    this.classpathLibs = ManifestParser.parseBundleClasspath(manifest.getMainAttributes());
-                    this.reexportedBundles = ManifestParser.parseReexportedBundles(manifest.getMainAttributes());
-                    this.fragmentHost = ManifestParser.parseFragmentHost(manifest.getMainAttributes());
-                } catch (IOException e) {
-                    log.error("Cannot load bundle %s".formatted(getBundleName()), e);
+            try {
+                BundleInfo bundleInfo = ManifestParser.readBundleInfo(path, null);
+                if (bundleInfo == null) {
+                    log.error("Cannot load bundle %s manifest".formatted(getBundleName()));
                     return false;
                 }
+                this.classpathLibs = bundleInfo.getClasspathLibs();
+                this.reexportedBundles = bundleInfo.getReexportedBundles();
+                this.fragmentHost = bundleInfo.getFragmentHost();
+            } catch (IOException e) {
+                log.error("Cannot load bundle %s".formatted(getBundleName()), e);
+                return false;
             }
+            PluginsExportIndex.INSTANCE.register(this);
             Collection<RemoteP2BundleInfo> sourceBundle = P2RepositoryManager.INSTANCE.getLookupCache().getRemoteBundlesByName(getBundleName() + ".source");
             if (!sourceBundle.isEmpty()) {
                 for (RemoteP2BundleInfo remoteP2BundleInfo : sourceBundle) {
@@ -197,10 +182,10 @@ public class RemoteP2BundleInfo extends BundleInfo {
         private List<String> classpathLibs;
 
         private RemoteP2Repository repository;
-        private final List<Pair<String, VersionRange>> requireBundles = new ArrayList<>();
+        private final Map<String, VersionRange> requireBundles = new LinkedHashMap<>();
         private Set<String> reexportedBundles = new HashSet<>();
         private final Set<Pair<String, Version>> exportPackages = new LinkedHashSet<>();
-        private final Set<Pair<String, VersionRange>> importPackages = new LinkedHashSet<>();
+        private final Map<String, VersionRange> importPackages = new LinkedHashMap<>();
         Integer startLevel;
         private boolean zipped = false;
 
@@ -213,10 +198,10 @@ public class RemoteP2BundleInfo extends BundleInfo {
                 bundleName,
                 bundleVersion,
                 classpathLibs,
-                requireBundles,
+                BundleUtils.toRequirements(requireBundles),
                 exportPackages,
                 reexportedBundles,
-                importPackages,
+                new LinkedHashSet<>(BundleUtils.toRequirements(importPackages)),
                 startLevel,
                 zipped
             );
@@ -243,7 +228,7 @@ public class RemoteP2BundleInfo extends BundleInfo {
         }
 
         public RemoteBundleInfoBuilder addToRequiredBundles(String requiredBundle, VersionRange range) {
-            this.requireBundles.add(new Pair<>(requiredBundle, range));
+            BundleUtils.mergeRequirement(this.requireBundles, requiredBundle, range);
             return this;
         }
 
@@ -253,7 +238,7 @@ public class RemoteP2BundleInfo extends BundleInfo {
         }
 
         public RemoteBundleInfoBuilder addToRequiredPackages(String importPackage, VersionRange range) {
-            this.importPackages.add(new Pair<>(importPackage, range));
+            BundleUtils.mergeRequirement(this.importPackages, importPackage, range);
             return this;
         }
 
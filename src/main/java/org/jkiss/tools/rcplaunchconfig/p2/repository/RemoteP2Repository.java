@@ -18,6 +18,7 @@
 package org.jkiss.tools.rcplaunchconfig.p2.repository;
 
 
+import jakarta.annotation.Nullable;
 import org.jkiss.tools.rcplaunchconfig.Artifact;
 import org.jkiss.tools.rcplaunchconfig.PathsManager;
 import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
@@ -28,7 +29,6 @@ import org.jkiss.tools.rcplaunchconfig.xml.ContentFileHandler;
 import org.jkiss.tools.rcplaunchconfig.xml.IndexFileParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,6 +40,7 @@ import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import javax.xml.stream.XMLStreamException;
 import java.util.*;
 
 public class RemoteP2Repository implements IRepository<RemoteP2BundleInfo> {
@@ -52,7 +53,8 @@ public class RemoteP2Repository implements IRepository<RemoteP2BundleInfo> {
     private final Set<RemoteP2Feature> remoteP2FeatureSet = new LinkedHashSet<>();
     private final RepositoryCache fileCache;
 
-    private List<Artifact> indexedArtifacts;
+    // keyed by classifier, lower-cased id and version, see artifactKey
+    private final Map<String, Artifact> indexedArtifacts = new HashMap<>();
 
     public RemoteP2Repository(URL url) {
         this.url = url;
@@ -65,14 +67,20 @@ public class RemoteP2Repository implements IRepository<RemoteP2BundleInfo> {
     }
 
 
-    public boolean isIndexed(String id, String version) {
-        for (Artifact indexedArtifact : indexedArtifacts) {
-            if (indexedArtifact.id().equalsIgnoreCase(id)
-                && indexedArtifact.version().toString().equals(version)) {
-                return true;
-            }
-        }
-        return false;
+    public boolean isIndexed(String classifier, String id, String version) {
+        return indexedArtifacts.containsKey(artifactKey(classifier, id, version));
+    }
+
+    @Nullable
+    public Artifact getIndexedArtifact(String classifier, String id, String version) {
+        return indexedArtifacts.get(artifactKey(classifier, id, version));
+    }
+
+    /**
+     * Bundles and features may have the same id and version, thus classifier is a part of the key
+     */
+    private static String artifactKey(String classifier, String id, String version) {
+        return classifier + '/' + id.toLowerCase(Locale.ROOT) + '_' + version;
     }
 
     public Path resolveBundle(RemoteP2BundleInfo remoteP2BundleInfo) {
@@ -232,8 +240,14 @@ public class RemoteP2Repository implements IRepository<RemoteP2BundleInfo> {
         remoteP2FeatureSet.addAll(features);
     }
 
-    private void indexArtifacts(Path artifactJar) throws IOException, SAXException, RepositoryInitialisationError {
+    private void indexArtifacts(Path artifactJar) throws IOException, XMLStreamException, RepositoryInitialisationError {
         Path path = FileUtils.extractConfigFromJar(artifactJar, "artifacts.xml");
-        indexedArtifacts = IndexFileParser.INSTANCE.listArtifactsFromIndexFile(path.toFile());
+        IndexFileParser.INSTANCE.readArtifactsFromIndexFile(
+            path.toFile(),
+            artifact -> indexedArtifacts.put(
+                artifactKey(artifact.classifier(), artifact.id(), artifact.version().toString()),
+                artifact
+            )
+        );
     }
 }
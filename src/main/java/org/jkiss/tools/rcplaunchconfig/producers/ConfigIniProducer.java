@@ -63,6 +63,7 @@ public class ConfigIniProducer {
             .flatMap(Collection::stream)
             .filter(it -> it.getPath() != null)
             .map(ConfigIniProducer::getBundleReference)
+            .sorted()
             .collect(Collectors.joining(","));
     }
 
@@ -18,6 +18,8 @@ package org.jkiss.tools.rcplaunchconfig.producers;
 
 import jakarta.annotation.Nonnull;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.ConfigurationConstants;
+import org.jkiss.tools.rcplaunchconfig.util.PrefixClassifier;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,18 +27,37 @@ import java.util.stream.Stream;
 
 public class DevPropertiesProducer {
 
-    public static final List<String> PACKAGES_FOR_DEV_PROPERTIES = List.of(
-        "org.jkiss",
-        "io.cloudbeaver",
-        "com.dbeaver",
-        "swtbot-simple",
-        "connections",
-        "unit"
+    public enum BundleOrigin {
+        WORKSPACE,
+        LIBRARY
+    }
+
+    private static final List<String> DEFAULT_WORKSPACE_BUNDLES = List.of(
+        "org.jkiss*",
+        "io.cloudbeaver*",
+        "com.dbeaver*",
+        "swtbot-simple*",
+        "connections*",
+        "unit*",
+        "!org.jkiss.bundle*"
     );
     private static final String DEFAULT_CLASSPATH = "target/classes";
 
+    private static volatile PrefixClassifier<BundleOrigin> bundleClassifier = createClassifier(String.join(";", DEFAULT_WORKSPACE_BUNDLES));
+
+    /**
+     * Replaces default workspace bundles patterns with the patterns from settings if specified
+     */
+    public static void init(@Nonnull Properties settings) {
+        String workspaceBundles = settings.getProperty(ConfigurationConstants.WORKSPACE_BUNDLES_PARAM);
+        if (workspaceBundles != null) {
+            bundleClassifier = createClassifier(workspaceBundles);
+        }
+    }
+
     public static @Nonnull Map<String, String> generateDevProperties(@Nonnull Collection<Set<BundleInfo>> bundles) {
-        Map<String, String> result = new LinkedHashMap<>();
+        // sorted to keep the file content stable between runs
+        Map<String, String> result = new TreeMap<>();
         for (var bundleInfos : bundles) {
             for (BundleInfo bundleInfo : bundleInfos) {
                 if (isBundleAcceptable(bundleInfo.getBundleName())) {
@@ -44,13 +65,26 @@ public class DevPropertiesProducer {
                 }
             }
         }
-        result.put("@ignoredot@", Boolean.TRUE.toString());
-        return result;
+        Map<String, String> properties = new LinkedHashMap<>(result);
+        properties.put("@ignoredot@", Boolean.TRUE.toString());
+        return properties;
     }
 
+    /**
+     * @return true for workspace bundles and features, which are built from sources
+     */
     public static boolean isBundleAcceptable(@Nonnull String bundleName) {
-        return !bundleName.startsWith("org.jkiss.bundle") &&
-            PACKAGES_FOR_DEV_PROPERTIES.stream().anyMatch(bundleName::startsWith);
+        return bundleClassifier.classify(bundleName) == BundleOrigin.WORKSPACE;
+    }
+
+    public static @Nonnull Map<BundleOrigin, Long> getBundleOriginHits() {
+        return bundleClassifier.getHits();
+    }
+
+    private static @Nonnull PrefixClassifier<BundleOrigin> createClassifier(@Nonnull String patterns) {
+        return PrefixClassifier.builder(BundleOrigin.LIBRARY)
+            .addAll(patterns, BundleOrigin.WORKSPACE, BundleOrigin.LIBRARY)
+            .build();
     }
 
     private static @Nonnull String generateValue(@Nonnull List<String> bundleClassPath) {
@@ -6,6 +6,7 @@ import org.jkiss.tools.rcplaunchconfig.*;
 import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.producers.DevPropertiesProducer;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestParser;
 import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
 import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
@@ -15,7 +16,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,13 +32,16 @@ public class IMLConfigurationProducer {
     public static final String TEST_FOLDER = "src/test/java";
     private final Map<Pair<String, VersionRange>, Set<BundleInfo>> bundlePackageImports = new ConcurrentHashMap<>();
 
+    // products are generated concurrently, collections below are accessed under the lock
+    private final Lock lock = new ReentrantLock();
+
     private final Set<String> generatedLibraries = new LinkedHashSet<>();
     private final Set<Path> rootModules = new LinkedHashSet<>();
-    private final Set<ModuleInfo> modules = new LinkedHashSet<>();
+    // keyed by module name, module of the later generation replaces the previous one
+    private final Map<String, ModuleInfo> modules = new LinkedHashMap<>();
 
     Set<Path> createdModules = new LinkedHashSet<>();
-
-    private final Lock lock = new ReentrantLock();
+    private final Set<String> unchangedModules = new LinkedHashSet<>();
 
     private final Map<Path, Result> products = new LinkedHashMap<>();
 
@@ -55,7 +58,7 @@ public class IMLConfigurationProducer {
         List<ModuleInfo> modules = new ArrayList<>();
         for (Set<BundleInfo> bundles : result.getBundlesByNames().values()) {
             for (BundleInfo bundleInfo : bundles) {
-                if (this.modules.contains(bundleInfo)) {
+                if (isModuleGenerated(bundleInfo)) {
                     continue;
                 }
                 if (DevPropertiesProducer.isBundleAcceptable(bundleInfo.getBundleName())) {
@@ -78,12 +81,70 @@ public class IMLConfigurationProducer {
         }
 
 
-        if (productPath != null) {
-            products.put(productPath, result);
-        }
         log.info(modules.size() + " module IML configs associated for " + result.getProductName());
-        this.modules.addAll(modules);
-        rootModules.addAll(generateRootModules());
+        Set<Path> rootModules = generateRootModules();
+        acquireLock();
+        try {
+            if (productPath != null) {
+                products.put(productPath, result);
+            }
+            for (ModuleInfo module : modules) {
+                this.modules.put(module.getModuleName(), module);
+            }
+            this.rootModules.addAll(rootModules);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the module was generated for the same bundle, in watch mode its manifest may have changed since then
+     */
+    private boolean isModuleGenerated(@NotNull BundleInfo bundleInfo) {
+        acquireLock();
+        try {
+            return modules.get(bundleInfo.getModuleName()) instanceof BundleInfo generated
+                && generated.equals(bundleInfo)
+                && generated.hasSameManifest(bundleInfo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps modules of the product which was skipped as unchanged in the modules list.
+     * Its Import-Package providers are registered again, modules of the regenerated products may depend on them.
+     */
+    public void addUnchangedProduct(@NotNull ProductFingerprint fingerprint) throws IOException {
+        for (ProductFingerprint.PackageImport packageImport : fingerprint.getPackageImports()) {
+            BundleInfo provider = ManifestParser.readBundleInfo(packageImport.providerPath(), null);
+            if (provider == null) {
+                log.warn("Provider of '{}' is not found in '{}'", packageImport.packageName(), packageImport.providerPath());
+                continue;
+            }
+            addRequiredBundleforPackage(packageImport.importPackage(), provider);
+        }
+        Set<Path> rootModules = generateRootModules();
+        acquireLock();
+        try {
+            unchangedModules.addAll(fingerprint.getModuleNames());
+            this.rootModules.addAll(rootModules);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Allows to overwrite files which were already written, used to regenerate configuration of changed products
+     */
+    public void resetGeneratedFiles() {
+        acquireLock();
+        try {
+            createdModules.clear();
+            generatedLibraries.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void generateImplConfiguration() throws IOException {
@@ -115,6 +176,13 @@ public class IMLConfigurationProducer {
     }
 
     private void createRunConfiguration() throws IOException {
+        Map<Path, Result> products;
+        acquireLock();
+        try {
+            products = new LinkedHashMap<>(this.products);
+        } finally {
+            lock.unlock();
+        }
         for (Map.Entry<Path, Result> pathPairEntry : products.entrySet()) {
             String config =
                 generateLaunchConfig(
@@ -255,25 +323,36 @@ public class IMLConfigurationProducer {
      * Add imported by package bundle to the list
      */
     public void addRequiredBundleforPackage(@NotNull Pair<String, VersionRange> packageName, @NotNull BundleInfo bundleInfo) {
-        bundlePackageImports.computeIfAbsent(packageName, it -> new LinkedHashSet<>()).add(bundleInfo);
+        // compute is atomic per key, products resolve their imports concurrently
+        bundlePackageImports.compute(packageName, (key, bundles) -> {
+            Set<BundleInfo> result = bundles == null ? new LinkedHashSet<>() : bundles;
+            // the same provider may come from several products as different instances
+            if (result.stream().noneMatch(it -> isSameBundle(it, bundleInfo))) {
+                result.add(bundleInfo);
+            }
+            return result;
+        });
     }
 
-    private void createConfigFile(@NotNull Path configPath, @NotNull String libraryConfig) throws IOException {
+    private static boolean isSameBundle(@NotNull BundleInfo first, @NotNull BundleInfo second) {
+        return first.getBundleName().equals(second.getBundleName())
+            && first.getVersion().equals(second.getVersion())
+            && Objects.equals(first.getPath(), second.getPath());
+    }
+
+    private void acquireLock() {
         while (!lock.tryLock()) {
             Thread.onSpinWait();
         }
+    }
+
+    private void createConfigFile(@NotNull Path configPath, @NotNull String libraryConfig) throws IOException {
+        acquireLock();
         try {
             if (createdModules.contains(configPath)) {
                 return;
             }
-            Files.deleteIfExists(configPath);
-            Files.createDirectories(configPath.getParent());
-            Files.createFile(configPath);
-            if (Files.exists(configPath)) {
-                try (PrintWriter out = new PrintWriter(configPath.toFile())) {
-                    out.print(libraryConfig);
-                }
-            }
+            FileUtils.writeIfChanged(configPath, libraryConfig);
             createdModules.add(configPath);
         } finally {
             lock.unlock();
@@ -286,15 +365,26 @@ public class IMLConfigurationProducer {
         builder.append("<project version=\"4\">\n");
         builder.append("  <component name=\"ProjectModuleManager\">\n");
         builder.append("    <modules>\n");
+        List<Path> rootModules;
+        Set<String> moduleNames = new TreeSet<>();
+        acquireLock();
+        try {
+            // sorted to keep the file content stable between runs
+            rootModules = this.rootModules.stream().sorted(Comparator.comparing(Path::getFileName)).toList();
+            moduleNames.addAll(modules.keySet());
+            moduleNames.addAll(unchangedModules);
+        } finally {
+            lock.unlock();
+        }
         for (Path rootModule : rootModules) {
             builder.append("      <module fileurl=\"file://$PROJECT_DIR$/")
                 .append(rootModule.getFileName()).append("\" filepath=\"$PROJECT_DIR$/")
                 .append(rootModule.getFileName()).append("\"/>\n");
         }
-        for (ModuleInfo module : modules) {
+        for (String moduleName : moduleNames) {
             builder.append("      <module fileurl=\"file://$PROJECT_DIR$/")
-                .append(module.getModuleName()).append(".iml\"").append(" filepath=\"$PROJECT_DIR$/")
-                .append(module.getModuleName()).append(".iml").append("\"/>\n");
+                .append(moduleName).append(".iml\"").append(" filepath=\"$PROJECT_DIR$/")
+                .append(moduleName).append(".iml").append("\"/>\n");
         }
         processAdditionalIMLModules(builder);
         builder.append("    </modules>\n");
@@ -354,7 +444,7 @@ public class IMLConfigurationProducer {
         @NotNull Result result,
         @NotNull Set<Pair<String, Version>> resolvedBundles,
         boolean isLibrary) {
-        resolvedBundles.add(new Pair<>(bundleInfo.getBundleName(), new Version(bundleInfo.getBundleVersion())));
+        resolvedBundles.add(new Pair<>(bundleInfo.getBundleName(), bundleInfo.getVersion()));
         if (bundleInfo.getPath().toFile().isDirectory()) {
             List<String> classpathLibs = bundleInfo.getClasspathLibs();
             if (!classpathLibs.isEmpty()) {
@@ -378,7 +468,7 @@ public class IMLConfigurationProducer {
                     log.warn("Missing reexported bundle " + reexportedBundle);
                     continue;
                 }
-                BundleInfo suitableBundle = bundlesByName.stream().filter(it -> VersionRange.isVersionsCompatible(bundleRequirements.get().getSecond(), new Version(it.getBundleVersion()))).findFirst().orElseThrow();
+                BundleInfo suitableBundle = getSuitableBundle(bundlesByName, bundleRequirements.get().getSecond());
                 appendLibraryInfo(builder, suitableBundle, result, resolvedBundles, isLibrary);
             }
             for (Pair<String, VersionRange> importPackage : bundleInfo.getImportPackages()) {
@@ -557,20 +647,35 @@ public class IMLConfigurationProducer {
             }
             return;
         }
-        BundleInfo bundle = bundleByName.stream().filter(it -> VersionRange.isVersionsCompatible(requireBundle.getSecond(), new Version(it.getBundleVersion()))).findFirst().orElseThrow();
-        if (resolvedBundles.contains(new Pair<>(requireBundle.getFirst(), new Version(bundle.getBundleVersion())))) {
+        BundleInfo bundle = getSuitableBundle(bundleByName, requireBundle.getSecond());
+        if (resolvedBundles.contains(new Pair<>(requireBundle.getFirst(), bundle.getVersion()))) {
             return;
         }
         boolean isExported = bundleInfo.getReexportedBundles().contains(requireBundle.getFirst());
         if (DevPropertiesProducer.isBundleAcceptable(requireBundle.getFirst())) {
-            resolvedBundles.add(new Pair<>(requireBundle.getFirst(), new Version(bundle.getBundleVersion())));
+            resolvedBundles.add(new Pair<>(requireBundle.getFirst(), bundle.getVersion()));
             builder.append("  <orderEntry type = \"module\" module-name=\"").append(requireBundle.getFirst())
                 .append(isExported ? "\" exported=\"\"" : "\"").append("/>").append("\n");
         } else {
-            addModuleLibrary(new Pair<>(requireBundle.getFirst(), new Version(bundle.getBundleVersion())), builder, result, resolvedBundles, isExported);
+            addModuleLibrary(new Pair<>(requireBundle.getFirst(), bundle.getVersion()), builder, result, resolvedBundles, isExported);
         }
     }
 
+    /**
+     * @return bundle matching the version range or any bundle with this name if the range is not satisfied
+     */
+    @NotNull
+    private static BundleInfo getSuitableBundle(@NotNull Set<BundleInfo> bundles, @Nullable VersionRange versionRange) {
+        return bundles.stream()
+            .filter(it -> VersionRange.isVersionsCompatible(versionRange, it.getVersion()))
+            .findFirst()
+            .orElseGet(() -> {
+                BundleInfo bundle = bundles.iterator().next();
+                log.debug("No '{}' bundle matches {}, {} will be used", bundle.getBundleName(), versionRange, bundle.getBundleVersion());
+                return bundle;
+            });
+    }
+
     private void addModuleLibrary(
         @NotNull Pair<String, Version> requiredLibrary,
         @NotNull StringBuilder builder,
@@ -585,7 +690,15 @@ public class IMLConfigurationProducer {
         }
         BundleInfo bundleByName;
         if (requiredLibrary.getSecond() != null) {
-            bundleByName = bundles.stream().filter(it -> new Version(it.getBundleVersion()).compareTo(requiredLibrary.getSecond()) == 0).findFirst().orElseThrow();
+            Version requiredVersion = requiredLibrary.getSecond();
+            // exact match first, then the same release with another qualifier
+            bundleByName = bundles.stream().filter(it -> it.getVersion().equals(requiredVersion)).findFirst()
+                .or(() -> bundles.stream().filter(it -> it.getVersion().compareIgnoringQualifier(requiredVersion) == 0).findFirst())
+                .orElse(null);
+            if (bundleByName == null) {
+                log.warn("Missing reexported bundle " + requiredLibrary);
+                return;
+            }
         } else {
             bundleByName = bundles.stream().findFirst().get();
         }
@@ -602,12 +715,18 @@ public class IMLConfigurationProducer {
             diff.removeAll(oldResolvedBundles);
             endLibraryEntry(builder, result, diff);
         } else {
-            if (!generatedLibraries.contains(bundleByName.getBundleName())) {
+            boolean newLibrary;
+            acquireLock();
+            try {
+                newLibrary = generatedLibraries.add(bundleByName.getBundleName());
+            } finally {
+                lock.unlock();
+            }
+            if (newLibrary) {
                 String libraryConfig = generateXMLLibraryConfig(bundleByName, result);
                 if (libraryConfig != null) {
                     createConfigFile(getLibraryConfigPath().resolve(bundleByName.getBundleName() + ".xml"), libraryConfig);
                 }
-                generatedLibraries.add(bundleByName.getBundleName());
             }
         }
     }
@@ -651,7 +770,7 @@ public class IMLConfigurationProducer {
         builder.append("     <SOURCES>\n");
         for (Pair<String, Version> resolvedBundle : resolvedBundles) {
             Collection<RemoteP2BundleInfo> sources = P2RepositoryManager.INSTANCE.getLookupCache().getRemoteBundlesByName(resolvedBundle.getFirst() + ".source");
-            Optional<RemoteP2BundleInfo> source = sources.stream().filter(it -> new Version(it.getBundleVersion()).compareTo(resolvedBundle.getSecond()) == 0).findFirst();
+            Optional<RemoteP2BundleInfo> source = sources.stream().filter(it -> it.getVersion().compareTo(resolvedBundle.getSecond()) == 0).findFirst();
             if (source.isPresent()) {
                 source.get().resolveBundle();
                 appendLibraryInfo(builder, source.get(), result, new LinkedHashSet<>(), false);
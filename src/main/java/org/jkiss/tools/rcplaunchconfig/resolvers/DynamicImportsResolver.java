@@ -22,73 +22,66 @@ import org.apache.commons.collections4.MultiValuedMap;
 import org.apache.commons.collections4.multimap.ArrayListValuedHashMap;
 import org.jkiss.code.NotNull;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
-import org.jkiss.tools.rcplaunchconfig.PathsManager;
 import org.jkiss.tools.rcplaunchconfig.Result;
 import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.producers.iml.IMLConfigurationProducer;
-import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
 import org.jkiss.utils.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DynamicImportsResolver {
 
     private static final Logger log = LoggerFactory.getLogger(DynamicImportsResolver.class);
 
-    public static final Path MANIFEST_PATH = Paths.get("META-INF", "MANIFEST.MF");
-
     private final MultiValuedMap<String, BundleInfo> failedToResolvePackagesToBundles = new ArrayListValuedHashMap<>();
+    private final MultiValuedMap<String, Pair<BundleInfo, Version>> parsedBundlesByExportedPackages = new ArrayListValuedHashMap<>();
+    private final MultiValuedMap<Pair<String, VersionRange>, BundleInfo> bundlesToAddByImportPackage = new ArrayListValuedHashMap<>();
 
     private Set<String> excludedBundles = Set.of("org.eclipse.rap.rwt");
 
+    /**
+     * Providers found for a single Import-Package entry
+     */
+    private record ImportDecision(
+        @Nonnull BundleInfo importer,
+        @Nonnull Pair<String, VersionRange> packageToImport,
+        @Nonnull List<BundleInfo> parsedProviders,
+        @Nonnull List<BundleInfo> localProviders,
+        @Nullable RemoteP2BundleInfo remoteProvider,
+        @Nonnull ResolutionTrace.Timings timings
+    ) {
+    }
 
+    /**
+     * Resolves imports in waves. Providers for all imports of a wave are selected in parallel,
+     * then remote providers are downloaded at once and bundles added by the wave form the next one.
+     */
     public void start(@Nonnull Result result, P2BundleLookupCache lookupCache) throws IOException {
-        var eclipsePluginsByExportedPackages = readEclipsePluginsExportedPackages(PathsManager.INSTANCE.getEclipsePluginsPath());
-
-        MultiValuedMap<String, Pair<BundleInfo, Version>> parsedBundlesByExportedPackages = new ArrayListValuedHashMap<>();
+        result.getStatistics().setPhase(ResolutionStatistics.Phase.IMPORTS);
+        List<BundleInfo> wave = new ArrayList<>();
         for (var parsedBundles : result.getBundlesByNames().values()) {
-            for (BundleInfo parsedBundle : parsedBundles) {
-                for (var exportedPackage : parsedBundle.getExportPackages()) {
-                    parsedBundlesByExportedPackages.put(exportedPackage.getFirst(), new Pair<>(parsedBundle, exportedPackage.getSecond()));
-                }
-            }
+            wave.addAll(parsedBundles);
         }
-
-        var bundlesToCheck = new LinkedHashMap<>(result.getBundlesByNames());
-        var additionalBundlesByImportPackage = new ArrayListValuedHashMap<Pair<String, VersionRange>, BundleInfo>();
-        for (var bundlesForResolve : bundlesToCheck.values()) {
-            for (BundleInfo bundleInfo : bundlesForResolve) {
-                resolveImportPackages(
-                    result,
-                    eclipsePluginsByExportedPackages,
-                    parsedBundlesByExportedPackages,
-                    bundleInfo,
-                    additionalBundlesByImportPackage,
-                    lookupCache);
-            }
-        }
-        for (var additionalBundle : additionalBundlesByImportPackage.values()) {
-            //if (!result.isPluginResolved(additionalBundle.getBundleName())) {
-            result.addBundle(additionalBundle);
-            //}
+        registerExports(wave);
+        while (!wave.isEmpty()) {
+            result.getStatistics().increment(ResolutionStatistics.Counter.IMPORT_WAVES);
+            wave = resolveWave(result, wave, lookupCache);
         }
 
         var unresolvedPackagesMsg = failedToResolvePackagesToBundles.keySet().stream()
             .sorted()
-            .filter(Predicate.not(additionalBundlesByImportPackage::containsKey))
+            .filter(Predicate.not(bundlesToAddByImportPackage::containsKey))
             .map(failedToResolvePackage -> {
                 var bundlesNamesList = failedToResolvePackagesToBundles.get(failedToResolvePackage).stream()
                     .map(it -> it.getPath() == null ? it.getBundleName() : it.getPath().toString())
@@ -102,144 +95,240 @@ public class DynamicImportsResolver {
         }
     }
 
-    private void resolveImportPackages(
+    private void registerExports(@Nonnull Collection<BundleInfo> bundles) {
+        for (BundleInfo bundle : bundles) {
+            for (var exportedPackage : bundle.getExportPackages()) {
+                parsedBundlesByExportedPackages.put(exportedPackage.getFirst(), new Pair<>(bundle, exportedPackage.getSecond()));
+            }
+        }
+    }
+
+    /**
+     * @return bundles added by this wave
+     */
+    @Nonnull
+    private List<BundleInfo> resolveWave(
         @Nonnull Result result,
-        @Nonnull MultiValuedMap<String, Pair<BundleInfo, Version>> eclipsePluginsByExportedPackages,
-        @Nonnull MultiValuedMap<String, Pair<BundleInfo, Version>> parsedResultPluginsByExportedPackages,
-        @Nonnull BundleInfo bundleInfo,
-        @Nonnull MultiValuedMap<Pair<String, VersionRange>, BundleInfo> bundlesToAddByImportPackage,
+        @Nonnull List<BundleInfo> wave,
         @Nonnull P2BundleLookupCache lookupCache
     ) throws IOException {
-        for (var packageToImport : bundleInfo.getImportPackages()) {
-            List<BundleInfo> suitableParsedBundles = getSuitableBundles(parsedResultPluginsByExportedPackages, packageToImport);
-            if (PackageChecker.INSTANCE.isPackageExcluded(packageToImport.getFirst()) ||
-                !suitableParsedBundles.isEmpty() ||
-                bundlesToAddByImportPackage.containsKey(packageToImport)
-            ) {
-                if (!suitableParsedBundles.isEmpty()) {
-                    for (BundleInfo info : suitableParsedBundles) {
-                        IMLConfigurationProducer.INSTANCE.addRequiredBundleforPackage(packageToImport, info);
-                    }
+        ResolutionStatistics statistics = result.getStatistics();
+        // Selection only reads the resolver state, it is modified below on this thread
+        List<ImportDecision> decisions = wave.parallelStream()
+            .flatMap(bundle -> bundle.getImportPackages().stream()
+                .map(packageToImport -> selectProviders(bundle, packageToImport, statistics, lookupCache)))
+            .filter(Objects::nonNull)
+            .toList();
+
+        Map<Pair<String, VersionRange>, List<BundleInfo>> newProviders = new LinkedHashMap<>();
+        Map<Pair<String, VersionRange>, ImportDecision> providerDecisions = new HashMap<>();
+        Map<Pair<String, VersionRange>, ImportDecision> remoteDecisions = new LinkedHashMap<>();
+        for (ImportDecision decision : decisions) {
+            var packageToImport = decision.packageToImport();
+            if (!decision.parsedProviders().isEmpty()) {
+                for (BundleInfo info : decision.parsedProviders()) {
+                    addPackageProvider(result, packageToImport, info);
                 }
-                // skip packages which is excluded or already resolved or planned to add
                 continue;
             }
-            var eclipseBundlesWithThisPackage = new ArrayList<>(getSuitableBundles(eclipsePluginsByExportedPackages, packageToImport));
-            if (eclipseBundlesWithThisPackage.isEmpty()) {
-                Collection<RemoteP2BundleInfo> remoteP2BundleInfos = lookupCache.getRemoteBundlesByExport(packageToImport.getFirst());
-                if (!failedToResolvePackagesToBundles.containsKey(packageToImport) && !lookupCache.getRemoteBundlesByExport(packageToImport.getFirst()).isEmpty()) {
-                    RemoteP2BundleInfo maxVersionRemoteBundle = null;
-                    for (RemoteP2BundleInfo remoteP2BundleInfo : remoteP2BundleInfos) {
-                        if (excludedBundles.contains(remoteP2BundleInfo.getBundleName())) {
-                            continue;
-                        }
-                        Optional<Pair<String, Version>> exportedPackage = remoteP2BundleInfo.getExportPackages().stream().filter(it -> it.getFirst().equals(packageToImport.getFirst())).findFirst();
-                        if (exportedPackage.isPresent() && VersionRange.isVersionsCompatible(packageToImport.getSecond(), exportedPackage.get().getSecond())) {
-                            if (maxVersionRemoteBundle == null) {
-                                maxVersionRemoteBundle = remoteP2BundleInfo;
-                            } else {
-                                maxVersionRemoteBundle = new Version(maxVersionRemoteBundle.getBundleVersion()).compareTo(new Version(remoteP2BundleInfo.getBundleVersion())) < 0 ? remoteP2BundleInfo : maxVersionRemoteBundle;
-                            }
-                        }
-                    }
-                    if (maxVersionRemoteBundle != null && maxVersionRemoteBundle.resolveBundle()) {
-                        for (var packageToExport : maxVersionRemoteBundle.getExportPackages()) {
-                            eclipsePluginsByExportedPackages.put(packageToExport.getFirst(), new Pair<>(maxVersionRemoteBundle, packageToExport.getSecond()));
-                        }
-                        eclipseBundlesWithThisPackage.add(maxVersionRemoteBundle);
-                    } else {
-                        failedToResolvePackagesToBundles.put(packageToImport.getFirst(), bundleInfo);
-                    }
-                    if (eclipseBundlesWithThisPackage.isEmpty()) {
-                        continue;
-                    }
-                } else {
-                    failedToResolvePackagesToBundles.put(packageToImport.getFirst(), bundleInfo);
-                    continue;
+            if (bundlesToAddByImportPackage.containsKey(packageToImport) ||
+                newProviders.containsKey(packageToImport) ||
+                remoteDecisions.containsKey(packageToImport)
+            ) {
+                // already planned to add
+                continue;
+            }
+            if (!decision.localProviders().isEmpty()) {
+                if (decision.localProviders().size() > 1) {
+                    var bundlesPathsList = decision.localProviders().stream()
+                        .map(it -> it.getPath().toString())
+                        .collect(Collectors.joining("\n  "));
+                    log.debug("Multiple plugins exports same package: '{}'\n  {}\n  All bundles will be used", packageToImport, bundlesPathsList);
                 }
-            } else if (eclipseBundlesWithThisPackage.size() > 1) {
-                var bundlesPathsList = eclipseBundlesWithThisPackage.stream()
-                    .map(it -> it.getPath().toString())
-                    .collect(Collectors.joining("\n  "));
-                log.debug("Multiple plugins exports same package: '{}'\n  {}\n  All bundles will be used", packageToImport, bundlesPathsList);
+                newProviders.put(packageToImport, decision.localProviders());
+                providerDecisions.put(packageToImport, decision);
+                continue;
+            }
+            // a bundle already chosen for download in this wave is reused, as if imports were resolved one by one
+            RemoteP2BundleInfo acceptedProvider = findAcceptedRemoteProvider(remoteDecisions.values(), packageToImport);
+            if (acceptedProvider != null) {
+                remoteDecisions.put(packageToImport, new ImportDecision(
+                    decision.importer(),
+                    packageToImport,
+                    List.of(),
+                    List.of(),
+                    acceptedProvider,
+                    decision.timings()));
+            } else if (decision.remoteProvider() != null) {
+                remoteDecisions.put(packageToImport, decision);
+            } else {
+                failedToResolvePackagesToBundles.put(packageToImport.getFirst(), decision.importer());
             }
-            eclipseBundlesWithThisPackage.forEach(it -> IMLConfigurationProducer.INSTANCE.addRequiredBundleforPackage(packageToImport, it));
-            for (var bundleToAdd : eclipseBundlesWithThisPackage) {
-                bundlesToAddByImportPackage.put(packageToImport, bundleToAdd);
-
-                var newResult = new DynamicImportResult(result);
-                resolveImportPackages(newResult, eclipsePluginsByExportedPackages, parsedResultPluginsByExportedPackages, bundleToAdd, bundlesToAddByImportPackage, lookupCache);
-                for (var requireBundle : bundleToAdd.getRequireBundles()) {
-                    PluginResolver.resolvePluginDependencies(newResult, requireBundle, null, lookupCache);
+        }
+
+        // Download all remote providers of the wave at once
+        Map<RemoteP2BundleInfo, Long> downloadTimes = new ConcurrentHashMap<>();
+        Set<RemoteP2BundleInfo> resolvedRemoteProviders = remoteDecisions.values().stream()
+            .map(ImportDecision::remoteProvider)
+            .distinct()
+            .parallel()
+            .filter(it -> {
+                statistics.increment(ResolutionStatistics.Counter.REMOTE_RESOLVES);
+                long downloadStart = System.nanoTime();
+                boolean resolved = it.resolveBundle();
+                downloadTimes.put(it, System.nanoTime() - downloadStart);
+                return resolved;
+            })
+            .collect(Collectors.toSet());
+        for (ImportDecision decision : remoteDecisions.values()) {
+            if (resolvedRemoteProviders.contains(decision.remoteProvider())) {
+                decision.timings().download = downloadTimes.getOrDefault(decision.remoteProvider(), 0L);
+                newProviders.put(decision.packageToImport(), List.of(decision.remoteProvider()));
+                providerDecisions.put(decision.packageToImport(), decision);
+            } else {
+                failedToResolvePackagesToBundles.put(decision.packageToImport().getFirst(), decision.importer());
+            }
+        }
+
+        var waveResult = new DynamicImportResult(result);
+        ResolutionContext waveContext = ResolutionContext.of(waveResult);
+        for (var providers : newProviders.entrySet()) {
+            ImportDecision decision = providerDecisions.get(providers.getKey());
+            for (BundleInfo provider : providers.getValue()) {
+                bundlesToAddByImportPackage.put(providers.getKey(), provider);
+                addPackageProvider(result, providers.getKey(), provider);
+                if (waveResult.addBundle(provider)) {
+                    result.getTrace().addBundle(
+                        provider,
+                        ResolutionTrace.Reason.IMPORT_PACKAGE,
+                        decision.importer().getBundleName(),
+                        providers.getKey().getFirst(),
+                        decision.timings());
                 }
-                BundleInfo[] array = newResult.getNewBundles().toArray(new BundleInfo[0]);
-                for (var newAddedBundle : array) {
-                    resolveImportPackages(newResult, eclipsePluginsByExportedPackages, parsedResultPluginsByExportedPackages, newAddedBundle, bundlesToAddByImportPackage, lookupCache);
+                for (var requireBundle : provider.getRequireBundles()) {
+                    PluginResolver.resolvePluginDependencies(
+                        waveContext,
+                        requireBundle,
+                        null,
+                        lookupCache,
+                        ResolutionTrace.Reason.REQUIRE_BUNDLE,
+                        provider.getBundleName());
                 }
-                newResult.flush();
             }
         }
+        List<BundleInfo> nextWave = new ArrayList<>(waveResult.getNewBundles());
+        waveResult.flush();
+        // Exports of the added bundles become visible to the later waves, their imports are satisfied
+        // by bundles of the result first. Bundles added by the same wave don't see each other's exports.
+        registerExports(nextWave);
+        return nextWave;
     }
 
-    @NotNull
-    private static List<BundleInfo> getSuitableBundles(@NotNull MultiValuedMap<String, Pair<BundleInfo, Version>> bundlesByExportedPackages,
-                                                       Pair<String, VersionRange> packageToImport) {
-        return bundlesByExportedPackages.get(packageToImport.getFirst()).stream().filter(it -> VersionRange.isVersionsCompatible(packageToImport.getSecond(), it.getSecond())).map(Pair::getFirst).toList();
+    /**
+     * Providers are kept in the result as well, so products skipped as unchanged can contribute them to IML generation
+     */
+    private static void addPackageProvider(
+        @Nonnull Result result,
+        @Nonnull Pair<String, VersionRange> packageToImport,
+        @Nonnull BundleInfo provider
+    ) {
+        result.addPackageProvider(packageToImport, provider);
+        IMLConfigurationProducer.INSTANCE.addRequiredBundleforPackage(packageToImport, provider);
     }
 
-    private @Nonnull MultiValuedMap<String, Pair<BundleInfo, Version>> readEclipsePluginsExportedPackages(
-        @Nonnull Path eclipsePluginsPath
-    ) throws IOException {
+    /**
+     * Returns null if the import needs no providers
+     */
+    @Nullable
+    private ImportDecision selectProviders(
+        @Nonnull BundleInfo bundleInfo,
+        @Nonnull Pair<String, VersionRange> packageToImport,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull P2BundleLookupCache lookupCache
+    ) {
+        statistics.increment(ResolutionStatistics.Counter.IMPORT_PACKAGES);
+        ResolutionTrace.Timings timings = new ResolutionTrace.Timings();
+        timings.resolved = true;
+        List<BundleInfo> suitableParsedBundles = getSuitableBundles(parsedBundlesByExportedPackages.get(packageToImport.getFirst()), packageToImport);
+        if (!suitableParsedBundles.isEmpty()) {
+            return new ImportDecision(bundleInfo, packageToImport, suitableParsedBundles, List.of(), null, timings);
+        }
+        if (PackageChecker.INSTANCE.isPackageExcluded(packageToImport.getFirst()) ||
+            bundlesToAddByImportPackage.containsKey(packageToImport)
+        ) {
+            // skip packages which is excluded or planned to add
+            return null;
+        }
+        long lookupStart = System.nanoTime();
+        List<BundleInfo> eclipseBundlesWithThisPackage = getSuitableBundles(PluginsExportIndex.INSTANCE.getExportingBundles(packageToImport.getFirst()), packageToImport);
+        timings.localLookup = System.nanoTime() - lookupStart;
+        if (!eclipseBundlesWithThisPackage.isEmpty()) {
+            return new ImportDecision(bundleInfo, packageToImport, List.of(), eclipseBundlesWithThisPackage, null, timings);
+        }
+        long remoteLookupStart = System.nanoTime();
+        RemoteP2BundleInfo remoteProvider = findRemoteProvider(packageToImport, lookupCache);
+        timings.remoteLookup = System.nanoTime() - remoteLookupStart;
+        return new ImportDecision(bundleInfo, packageToImport, List.of(), List.of(), remoteProvider, timings);
+    }
 
-        var eclipsePluginsFolder = eclipsePluginsPath.toFile();
-        var children = eclipsePluginsFolder.listFiles();
-        if (children == null) {
-            log.error("Couldn't get '{}'s children", eclipsePluginsPath);
-            return new ArrayListValuedHashMap<>();
+    @Nullable
+    private static RemoteP2BundleInfo findAcceptedRemoteProvider(
+        @Nonnull Collection<ImportDecision> remoteDecisions,
+        @Nonnull Pair<String, VersionRange> packageToImport
+    ) {
+        for (ImportDecision decision : remoteDecisions) {
+            if (isPackageExported(decision.remoteProvider(), packageToImport)) {
+                return decision.remoteProvider();
+            }
         }
+        return null;
+    }
 
-        var result = new ArrayListValuedHashMap<String, Pair<BundleInfo, Version>>();
+    private static boolean isPackageExported(
+        @Nonnull RemoteP2BundleInfo remoteP2BundleInfo,
+        @Nonnull Pair<String, VersionRange> packageToImport
+    ) {
+        Optional<Pair<String, Version>> exportedPackage = remoteP2BundleInfo.getExportPackages().stream().filter(it -> it.getFirst().equals(packageToImport.getFirst())).findFirst();
+        return exportedPackage.isPresent() && VersionRange.isVersionsCompatible(packageToImport.getSecond(), exportedPackage.get().getSecond());
+    }
 
-        for (var folderOrJar : children) {
-            if (".DS_Store".equals(folderOrJar.getName())) {
+    @Nullable
+    private RemoteP2BundleInfo findRemoteProvider(
+        @Nonnull Pair<String, VersionRange> packageToImport,
+        @Nonnull P2BundleLookupCache lookupCache
+    ) {
+        RemoteP2BundleInfo maxVersionRemoteBundle = null;
+        for (RemoteP2BundleInfo remoteP2BundleInfo : lookupCache.getRemoteBundlesByExport(packageToImport.getFirst())) {
+            if (excludedBundles.contains(remoteP2BundleInfo.getBundleName())) {
                 continue;
             }
-            BundleInfo bundleInfo;
-            if (folderOrJar.isDirectory()) {
-                var manifestFile = folderOrJar.toPath().resolve(MANIFEST_PATH).toFile();
-                if (!manifestFile.exists()) {
-                    log.error("Cannot find '{}'", manifestFile.getPath());
-                    continue;
-                }
-                try (var inputStream = new FileInputStream(manifestFile)) {
-                    var manifest = new Manifest(inputStream);
-                    bundleInfo = ManifestParser.parseManifest(folderOrJar.toPath(), null, manifest);
-                }
-            } else {
-                try (var jarFile = new JarFile(folderOrJar)) {
-                    var manifest = jarFile.getManifest();
-                    bundleInfo = ManifestParser.parseManifest(folderOrJar.toPath(), null, manifest);
-                } catch (Exception e) {
-                    log.error("Error during opening jar file for " + folderOrJar);
-                    throw e;
-                }
-            }
-            if (bundleInfo != null) {
-                for (var packageToExport : bundleInfo.getExportPackages()) {
-                    result.put(packageToExport.getFirst(), new Pair<>(bundleInfo, packageToExport.getSecond()));
+            if (isPackageExported(remoteP2BundleInfo, packageToImport)) {
+                if (maxVersionRemoteBundle == null || maxVersionRemoteBundle.getVersion().compareTo(remoteP2BundleInfo.getVersion()) < 0) {
+                    maxVersionRemoteBundle = remoteP2BundleInfo;
                 }
             }
         }
-        return result;
+        return maxVersionRemoteBundle;
     }
 
+    @NotNull
+    private static List<BundleInfo> getSuitableBundles(@NotNull Collection<Pair<BundleInfo, Version>> exportingBundles,
+                                                       Pair<String, VersionRange> packageToImport) {
+        return exportingBundles.stream().filter(it -> VersionRange.isVersionsCompatible(packageToImport.getSecond(), it.getSecond())).map(Pair::getFirst).toList();
+    }
+
+    /**
+     * Overlay over the parent result. Own storage of the result keeps the added bundles,
+     * reads fall through to the parent without copying.
+     */
     static class DynamicImportResult extends Result {
         private final Result previousResult;
-        private final Map<String, Set<BundleInfo>> newBundlesByNames;
+        // append-only log of the added bundles
+        private final List<BundleInfo> newBundles = new ArrayList<>();
+        private final Map<String, Set<BundleInfo>> bundlesView = new OverlayBundlesMap();
 
         DynamicImportResult(@Nonnull Result previousResult) {
             this.previousResult = previousResult;
-            this.newBundlesByNames = new LinkedHashMap<>();
         }
 
         @Override
@@ -247,42 +336,103 @@ public class DynamicImportsResolver {
             return previousResult.getProductPath();
         }
 
-        public Collection<BundleInfo> getNewBundles() {
-            return newBundlesByNames.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        @Nonnull
+        @Override
+        public ResolutionStatistics getStatistics() {
+            return previousResult.getStatistics();
         }
 
+        @Nonnull
         @Override
-        public void addBundle(@Nonnull BundleInfo bundleInfo) {
-            newBundlesByNames.computeIfAbsent(bundleInfo.getBundleName(), it -> new HashSet<>()).add(bundleInfo);
+        public ResolutionTrace getTrace() {
+            return previousResult.getTrace();
+        }
+
+        public List<BundleInfo> getNewBundles() {
+            return Collections.unmodifiableList(newBundles);
+        }
+
+        @Override
+        public boolean addBundle(@Nonnull BundleInfo bundleInfo) {
+            if (super.addBundle(bundleInfo)) {
+                newBundles.add(bundleInfo);
+                return true;
+            }
+            return false;
         }
 
         @Override
         public boolean isPluginResolved(@Nonnull String pluginName) {
-            return newBundlesByNames.containsKey(pluginName) || previousResult.isPluginResolved(pluginName);
+            return super.isPluginResolved(pluginName) || previousResult.isPluginResolved(pluginName);
         }
 
         @Nullable
         @Override
         public Set<BundleInfo> getBundlesByName(@Nonnull String name) {
-            var newBundle = newBundlesByNames.get(name);
+            var newBundle = super.getBundlesByName(name);
             return newBundle != null
                 ? newBundle
                 : previousResult.getBundlesByName(name);
         }
 
+        @Nullable
+        @Override
+        public BundleInfo getBundleByInfoAndVersion(Pair<String, VersionRange> bundle) {
+            var newBundle = super.getBundleByInfoAndVersion(bundle);
+            return newBundle != null
+                ? newBundle
+                : previousResult.getBundleByInfoAndVersion(bundle);
+        }
+
         @Nonnull
         @Override
         public Map<String, Set<BundleInfo>> getBundlesByNames() {
-            Map<String, Set<BundleInfo>> result = new LinkedHashMap<>(newBundlesByNames);
-            result.putAll(previousResult.getBundlesByNames());
-            return result;
+            return bundlesView;
         }
 
         public void flush() {
-            for (var bundleInfo : newBundlesByNames.values()) {
-                for (BundleInfo info : bundleInfo) {
-                    previousResult.addBundle(info);
-                }
+            for (BundleInfo info : newBundles) {
+                previousResult.addBundle(info);
+            }
+        }
+
+        /**
+         * Read-only view of own and parent bundles, own bundles hide parent ones with the same name
+         */
+        private class OverlayBundlesMap extends AbstractMap<String, Set<BundleInfo>> {
+            @Override
+            public Set<BundleInfo> get(Object key) {
+                return key instanceof String name ? getBundlesByName(name) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String name && isPluginResolved(name);
+            }
+
+            @Nonnull
+            @Override
+            public Set<Entry<String, Set<BundleInfo>>> entrySet() {
+                Map<String, Set<BundleInfo>> ownBundles = DynamicImportResult.super.getBundlesByNames();
+                return new AbstractSet<>() {
+                    @Nonnull
+                    @Override
+                    public Iterator<Entry<String, Set<BundleInfo>>> iterator() {
+                        return entries().iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return (int) entries().count();
+                    }
+
+                    private Stream<Entry<String, Set<BundleInfo>>> entries() {
+                        return Stream.concat(
+                            ownBundles.entrySet().stream(),
+                            previousResult.getBundlesByNames().entrySet().stream().filter(it -> !ownBundles.containsKey(it.getKey()))
+                        );
+                    }
+                };
             }
         }
     }
@@ -0,0 +1,194 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.FeatureInfo;
+import org.jkiss.tools.rcplaunchconfig.Result;
+import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
+import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
+import org.jkiss.utils.Pair;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Bundles and features added by the walk of a feature into an empty result, recorded once per run.
+ * The walk depends on the product only through the bundle and feature names it looks up.
+ * If the product has none of them yet, the recorded closure is spliced into the product
+ * with the same bundles, start levels, fragments and feature attribution as the walk would produce.
+ */
+final class FeatureClosure {
+
+    /**
+     * Feature id, version and feature.xml fingerprint
+     */
+    record Key(@Nonnull String featureId, @Nullable String version, long size, long lastModified) {
+
+        @Nonnull
+        static Key of(@Nonnull String featureId, @Nonnull ResolutionGraph.FeatureNode feature) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(feature.featureXmlFile().toPath(), BasicFileAttributes.class);
+            return new Key(featureId, feature.descriptor().version(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    // bundles in the order they were added, start level updates are added again
+    private final List<BundleInfo> bundles;
+    // the closure feature goes first
+    private final List<FeatureInfo> features;
+    private final Set<String> lookedUpBundles;
+    private final Set<String> lookedUpFeatures;
+    private final ResolutionTrace trace;
+
+    private FeatureClosure(@Nonnull ClosureResult closureResult) {
+        this.bundles = List.copyOf(closureResult.addedBundles);
+        this.features = List.copyOf(closureResult.getResolvedFeatures().values());
+        this.lookedUpBundles = Set.copyOf(closureResult.lookedUpBundles);
+        this.lookedUpFeatures = Set.copyOf(closureResult.lookedUpFeatures);
+        this.trace = closureResult.getTrace();
+    }
+
+    /**
+     * Walks the feature into an empty result, statistics are counted for the product which needs the closure first
+     */
+    @Nonnull
+    static FeatureClosure record(
+        @Nonnull String featureName,
+        @Nonnull ResolutionGraph.FeatureNode feature,
+        @Nonnull Result owner
+    ) throws IOException, XMLStreamException {
+        ClosureResult closureResult = new ClosureResult(owner);
+        FeatureInfo closureFeature = closureResult.addResolvedFeature(featureName, feature.featureXmlFile());
+        FeatureResolver.resolveFeatureEntries(ResolutionContext.of(closureResult).withFeature(closureFeature), feature);
+        return new FeatureClosure(closureResult);
+    }
+
+    /**
+     * The walk would give the same nodes only if none of the looked up bundles and features is in the result
+     */
+    boolean canSplice(@Nonnull Result result) {
+        for (String bundleName : lookedUpBundles) {
+            if (result.isPluginResolved(bundleName)) {
+                return false;
+            }
+        }
+        for (String featureName : lookedUpFeatures) {
+            if (result.isFeatureResolved(featureName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the recorded bundles and features to the result
+     *
+     * @return the closure feature added to the result
+     */
+    @Nonnull
+    FeatureInfo splice(@Nonnull Result result, P2BundleLookupCache cache) {
+        result.getStatistics().increment(ResolutionStatistics.Counter.CLOSURE_SPLICES);
+        Map<BundleInfo, BundleInfo> splicedBundles = new IdentityHashMap<>();
+        for (BundleInfo bundle : bundles) {
+            splicedBundles.put(bundle, PluginResolver.addClosureBundle(result, bundle, cache));
+        }
+        Map<FeatureInfo, FeatureInfo> splicedFeatures = new IdentityHashMap<>();
+        for (FeatureInfo feature : features) {
+            splicedFeatures.put(feature, result.addResolvedFeature(feature.getFeatureName(), feature.getFeatureXmlFile().toFile()));
+        }
+        for (FeatureInfo feature : features) {
+            FeatureInfo splicedFeature = splicedFeatures.get(feature);
+            for (BundleInfo bundle : feature.getBundles()) {
+                splicedFeature.addBundleDependency(splicedBundles.getOrDefault(bundle, bundle));
+            }
+            for (FeatureInfo includedFeature : feature.getFeatures()) {
+                splicedFeature.addFeatureDependency(splicedFeatures.getOrDefault(includedFeature, includedFeature));
+            }
+        }
+        result.getTrace().addAll(trace);
+        return splicedFeatures.get(features.get(0));
+    }
+
+    /**
+     * Result of the closure walk, remembers the names the walk looked up
+     */
+    private static final class ClosureResult extends Result {
+        private final Result owner;
+        private final List<BundleInfo> addedBundles = new ArrayList<>();
+        private final Set<String> lookedUpBundles = new HashSet<>();
+        private final Set<String> lookedUpFeatures = new HashSet<>();
+
+        ClosureResult(@Nonnull Result owner) {
+            this.owner = owner;
+            getTrace().setEnabled(owner.getTrace().isEnabled());
+        }
+
+        @Nonnull
+        @Override
+        public ResolutionStatistics getStatistics() {
+            return owner.getStatistics();
+        }
+
+        @Override
+        public FeatureInfo addResolvedFeature(@Nonnull String featureName, File featureXmlFile) {
+            lookedUpFeatures.add(featureName);
+            return super.addResolvedFeature(featureName, featureXmlFile);
+        }
+
+        @Override
+        public boolean addBundle(@Nonnull BundleInfo bundleInfo) {
+            lookedUpBundles.add(bundleInfo.getBundleName());
+            if (super.addBundle(bundleInfo)) {
+                addedBundles.add(bundleInfo);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isFeatureResolved(@Nonnull String featureName) {
+            lookedUpFeatures.add(featureName);
+            return super.isFeatureResolved(featureName);
+        }
+
+        @Override
+        public boolean isPluginResolved(@Nonnull String pluginName) {
+            lookedUpBundles.add(pluginName);
+            return super.isPluginResolved(pluginName);
+        }
+
+        @Nullable
+        @Override
+        public Set<BundleInfo> getBundlesByName(@Nonnull String name) {
+            lookedUpBundles.add(name);
+            return super.getBundlesByName(name);
+        }
+
+        @Nullable
+        @Override
+        public BundleInfo getBundleByInfoAndVersion(Pair<String, VersionRange> bundle) {
+            lookedUpBundles.add(bundle.getFirst());
+            return super.getBundleByInfoAndVersion(bundle);
+        }
+    }
+}
@@ -17,25 +17,25 @@
 package org.jkiss.tools.rcplaunchconfig.resolvers;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.jkiss.code.NotNull;
 import org.jkiss.tools.rcplaunchconfig.FeatureInfo;
-import org.jkiss.tools.rcplaunchconfig.PathsManager;
+import org.jkiss.tools.rcplaunchconfig.FeaturesStorage;
 import org.jkiss.tools.rcplaunchconfig.Result;
 import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
 import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
 import org.jkiss.tools.rcplaunchconfig.p2.RemoteP2Feature;
 import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
-import org.jkiss.tools.rcplaunchconfig.util.FileUtils;
-import org.jkiss.tools.rcplaunchconfig.xml.XmlReader;
+import org.jkiss.tools.rcplaunchconfig.util.Version;
+import org.jkiss.tools.rcplaunchconfig.xml.FeatureXmlDescriptor;
+import org.jkiss.utils.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -47,64 +47,112 @@ public class FeatureResolver {
 
     private static final String FEATURES_XML_FILENAME = "feature.xml";
 
-    private static final Map<Path, List<FeatureInfo>> projectFeatureStack = new ConcurrentHashMap<>();
-
-    public static void addNewFeatureProject(Path productPath) {
-        projectFeatureStack.put(productPath, new ArrayList<>());
-    }
-
-    public static FeatureInfo getCurrentFeature(Path productPath) {
-        try {
-            if (!projectFeatureStack.containsKey(productPath)) {
-                System.out.println("Failed " + productPath);
-            }
-        } catch (NullPointerException nullPointerException) {
-            System.out.println("Failed " + productPath);
-        }
-        if (projectFeatureStack.get(productPath).isEmpty()) {
-            return null;
-        }
-        return projectFeatureStack.get(productPath).get(projectFeatureStack.get(productPath).size() - 1);
+    /**
+     * Resolves feature declared by the product
+     */
+    public static void resolveFeatureDependencies(
+        @Nonnull Result result,
+        @Nonnull String bundleName
+    ) throws IOException, XMLStreamException {
+        resolveFeatureDependencies(ResolutionContext.of(result), bundleName);
     }
 
     public static void resolveFeatureDependencies(
-        @Nonnull Result result,
+        @Nonnull ResolutionContext context,
         @Nonnull String bundleName
     ) throws IOException, XMLStreamException {
+        Result result = context.result();
         if (result.isFeatureResolved(bundleName)) {
             return;
         }
+        ResolutionTrace.Timings timings = new ResolutionTrace.Timings();
+        ResolutionGraph.FeatureNode feature = ResolutionGraph.INSTANCE.getFeature(bundleName, result.getStatistics(), timings, () -> selectFeature(bundleName, timings));
+        if (feature != null && !spliceFeatureClosure(context, bundleName, feature, timings)) {
+            resolveFeatureNode(context, bundleName, feature, timings);
+        }
+    }
+
+    /**
+     * Resolves the feature node without adding it to a result
+     */
+    @Nullable
+    static ResolutionGraph.FeatureNode getFeatureNode(
+        @Nonnull String bundleName,
+        @Nonnull ResolutionStatistics statistics
+    ) throws IOException, XMLStreamException {
+        ResolutionTrace.Timings timings = new ResolutionTrace.Timings();
+        return ResolutionGraph.INSTANCE.getFeature(bundleName, statistics, timings, () -> selectFeature(bundleName, timings));
+    }
 
-        var featuresFoldersPaths = PathsManager.INSTANCE.getFeaturesLocations();
-        var featureXmlFiles = featuresFoldersPaths.stream()
-            .map(featuresFolderPath -> FileUtils.findFirstChildByPackageName(featuresFolderPath, bundleName))
-            .filter(Objects::nonNull)
-            .map(featureFolder -> FileUtils.findFirstChildByPackageName(featureFolder, FEATURES_XML_FILENAME))
-            .filter(Objects::nonNull)
-            .toList();
+    /**
+     * Adds the closure recorded for the feature instead of walking it, if the closure does not depend on the result
+     *
+     * @return false if the feature should be walked
+     */
+    private static boolean spliceFeatureClosure(
+        @Nonnull ResolutionContext context,
+        @Nonnull String bundleName,
+        @Nonnull ResolutionGraph.FeatureNode feature,
+        @Nonnull ResolutionTrace.Timings timings
+    ) throws IOException, XMLStreamException {
+        Result result = context.result();
+        FeatureClosure closure = ResolutionGraph.INSTANCE.getClosure(
+            FeatureClosure.Key.of(bundleName, feature),
+            () -> FeatureClosure.record(bundleName, feature, result));
+        if (closure == null || !closure.canSplice(result)) {
+            return false;
+        }
+        traceFeature(context, bundleName, timings);
+        FeatureInfo newFeature = closure.splice(result, P2RepositoryManager.INSTANCE.getLookupCache());
+        if (context.feature() != null) {
+            context.feature().addFeatureDependency(newFeature);
+        }
+        return true;
+    }
 
-        if (featureXmlFiles.size() == 1) {
+    /**
+     * Chooses local or remote feature, downloads remote feature if needed and reads its feature.xml
+     */
+    @Nullable
+    private static ResolutionGraph.FeatureNode selectFeature(
+        @Nonnull String bundleName,
+        @Nonnull ResolutionTrace.Timings timings
+    ) throws IOException, XMLStreamException {
+        timings.resolved = true;
+        long lookupStart = System.nanoTime();
+        List<FeaturesStorage.FeatureEntry> features = FeaturesStorage.INSTANCE.getFeatures(bundleName);
+        timings.localLookup = System.nanoTime() - lookupStart;
+
+        if (features.size() == 1) {
+            FeaturesStorage.FeatureEntry feature = features.get(0);
+            long remoteLookupStart = System.nanoTime();
             Optional<RemoteP2Feature> maxVersionRemoteFeature = BundleUtils.getMaxVersionRemoteFeature(bundleName, P2RepositoryManager.INSTANCE.getLookupCache());
-            if (maxVersionRemoteFeature.isPresent() && BundleUtils.isRemoteFeatureVersionGreater(maxVersionRemoteFeature.get(), FileUtils.extractVersion(featureXmlFiles.get(0).getParentFile()))) {
-                if (!resolveRemoteFeature(result, bundleName, maxVersionRemoteFeature.get())) {
+            timings.remoteLookup = System.nanoTime() - remoteLookupStart;
+            if (maxVersionRemoteFeature.isPresent() && feature.version() != null && BundleUtils.isRemoteFeatureVersionGreater(maxVersionRemoteFeature.get(), feature.version())) {
+                ResolutionGraph.FeatureNode remoteFeature = resolveRemoteFeature(maxVersionRemoteFeature.get(), timings);
+                if (remoteFeature == null) {
                     log.error("Couldn't resolve newer version feature '{}'", bundleName);
                 }
-            } else {
-                parseFeatureFile(result, bundleName, featureXmlFiles.get(0));
+                return remoteFeature;
             }
-        } else if (featureXmlFiles.isEmpty()) {
+            return createFeatureNode(feature.featureXmlFile(), timings);
+        } else if (features.isEmpty()) {
             P2BundleLookupCache lookupCache = P2RepositoryManager.INSTANCE.getLookupCache();
+            long remoteLookupStart = System.nanoTime();
             Optional<RemoteP2Feature> remoteP2FeatureOptional
-                = lookupCache.getRemoteFeaturesByName(bundleName).stream().max(Comparator.comparing(RemoteP2Feature::getVersion));
+                = lookupCache.getRemoteFeaturesByName(bundleName).stream().max(Comparator.comparing(it -> Version.of(it.getVersion())));
+            timings.remoteLookup = System.nanoTime() - remoteLookupStart;
             if (remoteP2FeatureOptional.isPresent()) {
-                RemoteP2Feature remoteP2Feature = remoteP2FeatureOptional.get();
-                if (resolveRemoteFeature(result, bundleName, remoteP2Feature)) {
-                    return;
+                ResolutionGraph.FeatureNode remoteFeature = resolveRemoteFeature(remoteP2FeatureOptional.get(), timings);
+                if (remoteFeature != null) {
+                    return remoteFeature;
                 }
             }
             log.error("Couldn't find feature '{}'", bundleName);
+            return null;
         } else {
-            var featuresFilesPaths = featureXmlFiles.stream()
+            var featuresFilesPaths = features.stream()
+                .map(FeaturesStorage.FeatureEntry::featureXmlFile)
                 .map(it -> {
                     try {
                         return it.getCanonicalPath();
@@ -114,39 +162,81 @@ public class FeatureResolver {
                 })
                 .collect(Collectors.joining("\n  "));
             log.warn("Found multiple features '{}'. First will be used.\n  {}", bundleName, featuresFilesPaths);
-            parseFeatureFile(result, bundleName, featureXmlFiles.get(0));
+            return createFeatureNode(features.get(0).featureXmlFile(), timings);
         }
     }
 
-    private static boolean resolveRemoteFeature(@NotNull Result result, @NotNull String bundleName, RemoteP2Feature remoteP2Feature) throws XMLStreamException, IOException {
+    @Nullable
+    private static ResolutionGraph.FeatureNode resolveRemoteFeature(
+        @NotNull RemoteP2Feature remoteP2Feature,
+        @Nonnull ResolutionTrace.Timings timings
+    ) throws XMLStreamException, IOException {
+        long downloadStart = System.nanoTime();
         boolean success = remoteP2Feature.resolveFeature();
+        timings.download = System.nanoTime() - downloadStart;
         if (success) {
-            File child = FileUtils.findFirstChildByPackageName(remoteP2Feature.getPath(), FEATURES_XML_FILENAME);
-            parseFeatureFile(result, bundleName, child);
-            return true;
+            FeaturesStorage.FeatureEntry feature = FeaturesStorage.INSTANCE.register(remoteP2Feature.getPath());
+            if (feature == null) {
+                log.error("'{}' is not found in '{}'", FEATURES_XML_FILENAME, remoteP2Feature.getPath());
+                return null;
+            }
+            return createFeatureNode(feature.featureXmlFile(), timings);
         }
-        return false;
+        return null;
     }
 
-    private static void parseFeatureFile(
-        @Nonnull Result result,
-        @Nonnull String bundleName,
-        @Nonnull File featureXmlFile
+    @Nonnull
+    private static ResolutionGraph.FeatureNode createFeatureNode(
+        @Nonnull File featureXmlFile,
+        @Nonnull ResolutionTrace.Timings timings
     ) throws XMLStreamException, IOException {
-        FeatureInfo currentFeature = getCurrentFeature(result.getProductPath());
+        long parseStart = System.nanoTime();
+        FeatureXmlDescriptor descriptor = FeatureXmlDescriptor.parse(featureXmlFile);
+        timings.parse = System.nanoTime() - parseStart;
+        return new ResolutionGraph.FeatureNode(featureXmlFile, descriptor);
+    }
 
-        FeatureInfo newFeature = result.addResolvedFeature(bundleName, featureXmlFile);
-        projectFeatureStack.get(result.getProductPath()).add(newFeature);
+    private static void resolveFeatureNode(
+        @Nonnull ResolutionContext context,
+        @Nonnull String bundleName,
+        @Nonnull ResolutionGraph.FeatureNode feature,
+        @Nonnull ResolutionTrace.Timings timings
+    ) throws XMLStreamException, IOException {
+        traceFeature(context, bundleName, timings);
+        FeatureInfo newFeature = context.result().addResolvedFeature(bundleName, feature.featureXmlFile());
+        if (context.feature() != null) {
+            context.feature().addFeatureDependency(newFeature);
+        }
+        resolveFeatureEntries(context.withFeature(newFeature), feature);
+    }
 
+    private static void traceFeature(
+        @Nonnull ResolutionContext context,
+        @Nonnull String bundleName,
+        @Nonnull ResolutionTrace.Timings timings
+    ) {
+        FeatureInfo currentFeature = context.feature();
         if (currentFeature != null) {
-            currentFeature.addFeatureDependency(newFeature);
+            context.result().getTrace().addFeature(bundleName, ResolutionTrace.Reason.FEATURE, currentFeature.getFeatureName(), timings);
+        } else {
+            context.result().getTrace().addFeature(bundleName, ResolutionTrace.Reason.PRODUCT, null, timings);
         }
-        XmlReader.INSTANCE.parseXmlFile(result, featureXmlFile);
+    }
 
-        FeatureInfo lastFeature = projectFeatureStack.get(result.getProductPath()).remove(projectFeatureStack.get(result.getProductPath()).size() - 1);
-        if (lastFeature != newFeature) {
-            throw new IOException("Feature parser internal error. Feature [" +
-                lastFeature.getFeatureName() + "] found while [" + newFeature.getFeatureName() + "] was expected");
+    /**
+     * Resolves features and plugins declared by the feature of the context
+     */
+    static void resolveFeatureEntries(
+        @Nonnull ResolutionContext featureContext,
+        @Nonnull ResolutionGraph.FeatureNode feature
+    ) throws XMLStreamException, IOException {
+        P2BundleLookupCache lookupCache = P2RepositoryManager.INSTANCE.getLookupCache();
+        for (FeatureXmlDescriptor.Entry entry : feature.descriptor().entries()) {
+            if (entry.feature()) {
+                resolveFeatureDependencies(featureContext, entry.id());
+            } else {
+                PluginResolver.resolvePluginDependencies(featureContext, new Pair<>(entry.id(), null), entry.startLevel(), lookupCache);
+            }
         }
     }
 }
@@ -0,0 +1,310 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.util.Version;
+import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
+import org.jkiss.utils.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of parsed bundle manifests.
+ * Entries are keyed by bundle path and validated by size and modification time of the manifest source
+ * (jar file or META-INF/MANIFEST.MF of the bundle folder).
+ */
+public enum ManifestCache {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(ManifestCache.class);
+
+    private static final int FORMAT_VERSION = 3;
+
+    private final Map<Path, CacheEntry> entries = new ConcurrentHashMap<>();
+    private Path cacheFile;
+    private volatile boolean modified;
+
+    public void load(@Nonnull Path cacheFile) {
+        this.cacheFile = cacheFile;
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                log.info("Manifest cache format changed, cache will be rebuilt");
+                return;
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+            int entriesCount = in.readInt();
+            for (int i = 0; i < entriesCount; i++) {
+                Path path = Path.of(strings[in.readInt()]);
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                BundleInfo bundleInfo = in.readBoolean() ? readBundleInfo(in, strings, path) : null;
+                entries.put(path, new CacheEntry(size, lastModified, bundleInfo));
+            }
+            log.debug("{} manifests loaded from cache", entries.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error reading manifest cache '{}', cache will be rebuilt", cacheFile, e);
+            entries.clear();
+        }
+    }
+
+    public void save() {
+        if (cacheFile == null || !modified) {
+            return;
+        }
+        try {
+            Map<String, Integer> stringTable = new LinkedHashMap<>();
+            var body = new ByteArrayOutputStream();
+            int entriesCount = 0;
+            try (var out = new DataOutputStream(body)) {
+                for (Map.Entry<Path, CacheEntry> entry : entries.entrySet()) {
+                    if (!Files.exists(entry.getKey())) {
+                        continue;
+                    }
+                    CacheEntry cacheEntry = entry.getValue();
+                    writeString(out, stringTable, entry.getKey().toString());
+                    out.writeLong(cacheEntry.size());
+                    out.writeLong(cacheEntry.lastModified());
+                    out.writeBoolean(cacheEntry.bundleInfo() != null);
+                    if (cacheEntry.bundleInfo() != null) {
+                        writeBundleInfo(out, stringTable, cacheEntry.bundleInfo());
+                    }
+                    entriesCount++;
+                }
+            }
+            Files.createDirectories(cacheFile.getParent());
+            Path tempFile = Files.createTempFile(cacheFile.getParent(), "manifests", ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(stringTable.size());
+                for (String string : stringTable.keySet()) {
+                    out.writeUTF(string);
+                }
+                out.writeInt(entriesCount);
+                body.writeTo(out);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("{} manifests saved to cache", entriesCount);
+        } catch (IOException e) {
+            log.warn("Error saving manifest cache '{}'", cacheFile, e);
+        }
+    }
+
+    /**
+     * Returns cached bundle info if the manifest source was not changed since it was cached,
+     * otherwise parses the manifest with the loader and caches the result.
+     */
+    @Nullable
+    BundleInfo getBundleInfo(
+        @Nonnull Path folderOrJar,
+        @Nonnull Path manifestSource,
+        @Nullable Integer startLevel,
+        @Nonnull ManifestLoader loader
+    ) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(manifestSource, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CacheEntry cacheEntry = entries.get(folderOrJar);
+        if (cacheEntry == null || cacheEntry.size() != size || cacheEntry.lastModified() != lastModified) {
+            cacheEntry = new CacheEntry(size, lastModified, loader.load());
+            entries.put(folderOrJar, cacheEntry);
+            modified = true;
+        }
+        BundleInfo bundleInfo = cacheEntry.bundleInfo();
+        if (bundleInfo == null) {
+            return null;
+        }
+        return new BundleInfo(
+            folderOrJar,
+            bundleInfo.getBundleName(),
+            bundleInfo.getBundleVersion(),
+            bundleInfo.getClasspathLibs(),
+            bundleInfo.getRequireBundles(),
+            bundleInfo.getReexportedBundles(),
+            bundleInfo.getExportPackages(),
+            bundleInfo.getImportPackages(),
+            bundleInfo.getRequireFragments(),
+            bundleInfo.getFragmentHost(),
+            startLevel
+        );
+    }
+
+    @Nonnull
+    private static BundleInfo readBundleInfo(@Nonnull DataInput in, @Nonnull String[] strings, @Nonnull Path path) throws IOException {
+        String bundleName = strings[in.readInt()];
+        String bundleVersion = strings[in.readInt()];
+        List<String> classpathLibs = readStrings(in, strings);
+        int requireBundlesCount = in.readInt();
+        List<Pair<String, VersionRange>> requireBundles = new ArrayList<>(requireBundlesCount);
+        for (int i = 0; i < requireBundlesCount; i++) {
+            requireBundles.add(new Pair<>(strings[in.readInt()], readVersionRange(in, strings)));
+        }
+        Set<String> reexportedBundles = new HashSet<>(readStrings(in, strings));
+        int exportPackagesCount = in.readInt();
+        Set<Pair<String, Version>> exportPackages = new HashSet<>(exportPackagesCount * 2);
+        for (int i = 0; i < exportPackagesCount; i++) {
+            exportPackages.add(new Pair<>(strings[in.readInt()], readVersion(in, strings)));
+        }
+        int importPackagesCount = in.readInt();
+        Set<Pair<String, VersionRange>> importPackages = new HashSet<>(importPackagesCount * 2);
+        for (int i = 0; i < importPackagesCount; i++) {
+            importPackages.add(new Pair<>(strings[in.readInt()], readVersionRange(in, strings)));
+        }
+        List<String> requiredFragments = readStrings(in, strings);
+        Pair<String, VersionRange> fragmentHost = null;
+        if (in.readBoolean()) {
+            fragmentHost = new Pair<>(strings[in.readInt()], readVersionRange(in, strings));
+        }
+        return new BundleInfo(
+            path,
+            bundleName,
+            bundleVersion,
+            classpathLibs,
+            requireBundles,
+            reexportedBundles,
+            exportPackages,
+            importPackages,
+            requiredFragments,
+            fragmentHost,
+            null
+        );
+    }
+
+    private static void writeBundleInfo(
+        @Nonnull DataOutput out,
+        @Nonnull Map<String, Integer> stringTable,
+        @Nonnull BundleInfo bundleInfo
+    ) throws IOException {
+        writeString(out, stringTable, bundleInfo.getBundleName());
+        writeString(out, stringTable, bundleInfo.getBundleVersion());
+        writeStrings(out, stringTable, bundleInfo.getClasspathLibs());
+        out.writeInt(bundleInfo.getRequireBundles().size());
+        for (Pair<String, VersionRange> requireBundle : bundleInfo.getRequireBundles()) {
+            writeString(out, stringTable, requireBundle.getFirst());
+            writeVersionRange(out, stringTable, requireBundle.getSecond());
+        }
+        writeStrings(out, stringTable, bundleInfo.getReexportedBundles());
+        out.writeInt(bundleInfo.getExportPackages().size());
+        for (Pair<String, Version> exportPackage : bundleInfo.getExportPackages()) {
+            writeString(out, stringTable, exportPackage.getFirst());
+            writeVersion(out, stringTable, exportPackage.getSecond());
+        }
+        out.writeInt(bundleInfo.getImportPackages().size());
+        for (Pair<String, VersionRange> importPackage : bundleInfo.getImportPackages()) {
+            writeString(out, stringTable, importPackage.getFirst());
+            writeVersionRange(out, stringTable, importPackage.getSecond());
+        }
+        writeStrings(out, stringTable, bundleInfo.getRequireFragments());
+        Pair<String, VersionRange> fragmentHost = bundleInfo.getFragmentHost();
+        out.writeBoolean(fragmentHost != null);
+        if (fragmentHost != null) {
+            writeString(out, stringTable, fragmentHost.getFirst());
+            writeVersionRange(out, stringTable, fragmentHost.getSecond());
+        }
+    }
+
+    @Nonnull
+    private static List<String> readStrings(@Nonnull DataInput in, @Nonnull String[] strings) throws IOException {
+        int count = in.readInt();
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(strings[in.readInt()]);
+        }
+        return result;
+    }
+
+    private static void writeStrings(
+        @Nonnull DataOutput out,
+        @Nonnull Map<String, Integer> stringTable,
+        @Nonnull Collection<String> values
+    ) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, stringTable, value);
+        }
+    }
+
+    private static void writeString(
+        @Nonnull DataOutput out,
+        @Nonnull Map<String, Integer> stringTable,
+        @Nonnull String value
+    ) throws IOException {
+        out.writeInt(stringTable.computeIfAbsent(value, it -> stringTable.size()));
+    }
+
+    @Nullable
+    private static Version readVersion(@Nonnull DataInput in, @Nonnull String[] strings) throws IOException {
+        int index = in.readInt();
+        return index == -1 ? null : Version.of(strings[index]);
+    }
+
+    private static void writeVersion(
+        @Nonnull DataOutput out,
+        @Nonnull Map<String, Integer> stringTable,
+        @Nullable Version version
+    ) throws IOException {
+        if (version == null) {
+            out.writeInt(-1);
+        } else {
+            writeString(out, stringTable, version.toString());
+        }
+    }
+
+    @Nullable
+    private static VersionRange readVersionRange(@Nonnull DataInput in, @Nonnull String[] strings) throws IOException {
+        int index = in.readInt();
+        // Ranges are stored in their text form and shared through VersionRange cache
+        return index == -1 ? null : VersionRange.fromString(strings[index]);
+    }
+
+    private static void writeVersionRange(
+        @Nonnull DataOutput out,
+        @Nonnull Map<String, Integer> stringTable,
+        @Nullable VersionRange range
+    ) throws IOException {
+        if (range == null) {
+            out.writeInt(-1);
+        } else {
+            writeString(out, stringTable, range.toString());
+        }
+    }
+
+    @FunctionalInterface
+    interface ManifestLoader {
+        @Nullable
+        BundleInfo load() throws IOException;
+    }
+
+    private record CacheEntry(long size, long lastModified, @Nullable BundleInfo bundleInfo) {
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass parser of OSGi manifest headers.
+ * Header consists of clauses separated by commas, each clause has one or more names followed by
+ * attributes ({@code name=value}) and directives ({@code name:=value}), values may be quoted.
+ * Only the parameters required for the dependencies resolution are kept.
+ */
+final class ManifestHeaderParser {
+
+    /**
+     * Clause with a single name, clauses with multiple names are split into several ones with the same parameters
+     */
+    record Clause(@Nonnull String name, @Nullable String version, boolean optional, boolean reexport) {
+    }
+
+    /**
+     * Kind of the header, defines the attribute which holds the version
+     */
+    enum HeaderKind {
+        /**
+         * Require-Bundle and Fragment-Host, version is set by {@code bundle-version}
+         */
+        BUNDLE,
+        /**
+         * Import-Package and Export-Package, version is set by {@code version} or deprecated {@code specification-version}
+         */
+        PACKAGE
+    }
+
+    private final String header;
+    private final HeaderKind kind;
+    private final int length;
+    private int pos;
+
+    private ManifestHeaderParser(@Nonnull String header, @Nonnull HeaderKind kind) {
+        this.header = header;
+        this.kind = kind;
+        this.length = header.length();
+    }
+
+    @Nonnull
+    static List<Clause> parse(@Nullable String header, @Nonnull HeaderKind kind) {
+        if (header == null || header.isBlank()) {
+            return List.of();
+        }
+        return new ManifestHeaderParser(header, kind).parseClauses();
+    }
+
+    @Nonnull
+    private List<Clause> parseClauses() {
+        List<Clause> clauses = new ArrayList<>();
+        List<String> names = new ArrayList<>(1);
+        while (pos < length) {
+            names.clear();
+            String version = null;
+            boolean optional = false;
+            boolean reexport = false;
+            while (pos < length) {
+                skipWhitespaces();
+                int tokenStart = pos;
+                int tokenEnd = pos;
+                while (pos < length) {
+                    char c = header.charAt(pos);
+                    if (c == ';' || c == ',' || c == '=' || (c == ':' && pos + 1 < length && header.charAt(pos + 1) == '=')) {
+                        break;
+                    }
+                    pos++;
+                    if (!Character.isWhitespace(c)) {
+                        tokenEnd = pos;
+                    }
+                }
+                if (pos < length && header.charAt(pos) != ';' && header.charAt(pos) != ',') {
+                    boolean directive = header.charAt(pos) == ':';
+                    pos += directive ? 2 : 1;
+                    String value = readValue();
+                    if (directive) {
+                        if (matches("resolution", tokenStart, tokenEnd)) {
+                            optional = "optional".equals(value);
+                        } else if (matches("visibility", tokenStart, tokenEnd)) {
+                            reexport = "reexport".equals(value);
+                        }
+                    } else if (isVersionAttribute(tokenStart, tokenEnd)) {
+                        version = value;
+                    }
+                } else if (tokenEnd > tokenStart) {
+                    names.add(header.substring(tokenStart, tokenEnd));
+                }
+                if (pos >= length || header.charAt(pos++) == ',') {
+                    break;
+                }
+            }
+            for (String name : names) {
+                clauses.add(new Clause(name, version, optional, reexport));
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Reads quoted or plain value, position is left at the separator after the value
+     */
+    @Nonnull
+    private String readValue() {
+        skipWhitespaces();
+        String value;
+        if (pos < length && header.charAt(pos) == '"') {
+            int valueStart = ++pos;
+            StringBuilder escaped = null;
+            while (pos < length && header.charAt(pos) != '"') {
+                if (header.charAt(pos) == '\\' && pos + 1 < length) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder();
+                    }
+                    escaped.append(header, valueStart, pos);
+                    valueStart = ++pos;
+                }
+                pos++;
+            }
+            value = escaped == null
+                ? header.substring(valueStart, pos)
+                : escaped.append(header, valueStart, pos).toString();
+            pos++;
+            // skip anything up to the separator
+            while (pos < length && header.charAt(pos) != ';' && header.charAt(pos) != ',') {
+                pos++;
+            }
+        } else {
+            int valueStart = pos;
+            int valueEnd = pos;
+            while (pos < length && header.charAt(pos) != ';' && header.charAt(pos) != ',') {
+                if (!Character.isWhitespace(header.charAt(pos))) {
+                    valueEnd = pos + 1;
+                }
+                pos++;
+            }
+            value = header.substring(valueStart, valueEnd);
+        }
+        return value.trim();
+    }
+
+    private void skipWhitespaces() {
+        while (pos < length && Character.isWhitespace(header.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean isVersionAttribute(int start, int end) {
+        return switch (kind) {
+            case BUNDLE -> matches("bundle-version", start, end);
+            case PACKAGE -> matches("version", start, end) || matches("specification-version", start, end);
+        };
+    }
+
+    private boolean matches(@Nonnull String name, int start, int end) {
+        return end - start == name.length() && header.regionMatches(true, start, name, 0, name.length());
+    }
+}
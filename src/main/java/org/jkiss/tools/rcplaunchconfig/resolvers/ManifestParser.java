@@ -19,30 +19,64 @@ package org.jkiss.tools.rcplaunchconfig.resolvers;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
-import org.jkiss.code.NotNull;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
-import org.jkiss.tools.rcplaunchconfig.util.DependencyInformation;
+import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
 import org.jkiss.utils.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
+import java.nio.file.Paths;
+import java.util.*;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class ManifestParser {
 
     private static final Logger log = LoggerFactory.getLogger(ManifestParser.class);
-    private static final Pattern VERSION_REGEX = Pattern.compile(".*(?:version|bundle-version)=\"([^\"]*)");
+
+    public static final Path MANIFEST_PATH = Paths.get("META-INF", "MANIFEST.MF");
+
+    /**
+     * Reads bundle info from the bundle folder or jar, parsed manifests are taken from {@link ManifestCache}
+     *
+     * @return bundle info or null if the manifest is missing or doesn't describe a bundle
+     */
+    public static @Nullable BundleInfo readBundleInfo(
+        @Nonnull Path pathToContainingFolderOrJar,
+        @Nullable Integer startLevel
+    ) throws IOException {
+        if (Files.isDirectory(pathToContainingFolderOrJar)) {
+            var manifestPath = pathToContainingFolderOrJar.resolve(MANIFEST_PATH);
+            if (!Files.exists(manifestPath)) {
+                log.error("Cannot find '{}'", manifestPath);
+                return null;
+            }
+            return ManifestCache.INSTANCE.getBundleInfo(pathToContainingFolderOrJar, manifestPath, startLevel, () ->
+                parseManifest(pathToContainingFolderOrJar, null, ManifestReader.readFromFile(manifestPath))
+            );
+        } else {
+            return ManifestCache.INSTANCE.getBundleInfo(pathToContainingFolderOrJar, pathToContainingFolderOrJar, startLevel, () -> {
+                try {
+                    var manifest = ManifestReader.readFromJar(pathToContainingFolderOrJar);
+                    if (manifest == null) {
+                        log.error("Cannot find manifest in '{}'", pathToContainingFolderOrJar);
+                        return null;
+                    }
+                    return parseManifest(pathToContainingFolderOrJar, null, manifest);
+                } catch (IOException e) {
+                    log.error("Error during opening jar file for " + pathToContainingFolderOrJar);
+                    throw e;
+                }
+            });
+        }
+    }
+
     public static @Nullable BundleInfo parseManifest(
         @Nonnull Path pathToContainingFolderOrJar,
         @Nullable Integer startLevel,
@@ -61,36 +95,48 @@ public class ManifestParser {
 
         var classPath = parseBundleClasspath(attributes);
 
-        var requireBundlesArg = attributes.getValue("Require-Bundle");
-        Stream<String> requiredBundlesStream = getBundlesStream(requireBundlesArg);
-        List<Pair<String, VersionRange>> requireBundles = requiredBundlesStream == null
-            ? List.of()
-            : requiredBundlesStream
-            .map(it -> convertToDependencyInformation(it, false))
-            .map(ManifestParser::convertDependencyInformationToVersionRangePair)
-            .collect(Collectors.toList());
+        // the same name may be listed several times, all constraints must be met
+        Map<String, VersionRange> requireBundles = new LinkedHashMap<>();
+        Set<String> reexportedBundles = new HashSet<>();
+        for (ManifestHeaderParser.Clause clause : ManifestHeaderParser.parse(attributes.getValue("Require-Bundle"), ManifestHeaderParser.HeaderKind.BUNDLE)) {
+            if (clause.optional()) {
+                continue;
+            }
+            addRequirement(requireBundles, clause, bundleName);
+            if (clause.reexport()) {
+                reexportedBundles.add(clause.name());
+            }
+        }
+
+        List<String> requiredFragments = new ArrayList<>();
+        for (ManifestHeaderParser.Clause clause : ManifestHeaderParser.parse(attributes.getValue("X-Require-Fragment"), ManifestHeaderParser.HeaderKind.BUNDLE)) {
+            if (!clause.optional()) {
+                requiredFragments.add(clause.name());
+            }
+        }
 
-        String requiredFragmentsArg = attributes.getValue("X-Require-Fragment");
-        Stream<String> bundlesStream = getBundlesStream(requiredFragmentsArg);
-        List<String> requiredFragments = bundlesStream == null
-            ? List.of()
-            : bundlesStream
-            .map(ManifestParser::trimBundleName)
-            .toList();
-
-        Set<String> reexportedBundles = parseReexportedBundles(attributes);
-        var exportPackageArg = splitExportPackagesList(attributes.getValue("Export-Package"));
-        var importPackageArg = splitImportPackagesList(attributes.getValue("Import-Package"));
+        Set<Pair<String, Version>> exportPackageArg = new HashSet<>();
+        for (ManifestHeaderParser.Clause clause : ManifestHeaderParser.parse(attributes.getValue("Export-Package"), ManifestHeaderParser.HeaderKind.PACKAGE)) {
+            if (!clause.optional()) {
+                exportPackageArg.add(new Pair<>(clause.name(), parseVersion(clause)));
+            }
+        }
+        Map<String, VersionRange> importPackageArg = new LinkedHashMap<>();
+        for (ManifestHeaderParser.Clause clause : ManifestHeaderParser.parse(attributes.getValue("Import-Package"), ManifestHeaderParser.HeaderKind.PACKAGE)) {
+            if (!clause.optional()) {
+                addRequirement(importPackageArg, clause, bundleName);
+            }
+        }
         Pair<String, VersionRange> fragmentHost = parseFragmentHost(attributes);
         return new BundleInfo(
             pathToContainingFolderOrJar,
             bundleName,
             bundleVersionArg != null ? bundleVersionArg.trim() : "",
             classPath,
-            requireBundles,
+            BundleUtils.toRequirements(requireBundles),
             reexportedBundles,
             exportPackageArg,
-            importPackageArg,
+            new HashSet<>(BundleUtils.toRequirements(importPackageArg)),
             requiredFragments,
             fragmentHost,
             startLevel
@@ -99,41 +145,12 @@ public class ManifestParser {
 
     @org.jkiss.code.Nullable
     public static Pair<String, VersionRange> parseFragmentHost(Attributes attributes) {
-        if (attributes.getValue("Fragment-Host") == null) {
+        List<ManifestHeaderParser.Clause> clauses = ManifestHeaderParser.parse(attributes.getValue("Fragment-Host"), ManifestHeaderParser.HeaderKind.BUNDLE);
+        if (clauses.isEmpty()) {
             return null;
         }
-        String value = attributes.getValue("Fragment-Host");
-        Matcher matcher = VERSION_REGEX.matcher(value);
-        VersionRange range = null;
-        if (matcher.matches()) {
-            String group = matcher.group(1);
-            range = VersionRange.fromString(group);
-        }
-        String name = trimBundleName(attributes.getValue("Fragment-Host"));
-        return new Pair<>(name, range);
-    }
-
-    @NotNull
-    public static Set<String> parseReexportedBundles(@Nonnull Attributes attrs) {
-        var requireBundlesArg = attrs.getValue("Require-Bundle");
-        Stream<String> requiredBundlesStream;
-        requiredBundlesStream = getBundlesStream(requireBundlesArg);
-        return requiredBundlesStream == null ? Set.of() :
-            requiredBundlesStream.filter(it -> it.contains("visibility:=reexport"))
-                .map(ManifestParser::trimBundleName).collect(Collectors.toSet());
-    }
-
-    @org.jkiss.code.Nullable
-    private static Stream<String> getBundlesStream(String requireBundlesArg) {
-        return requireBundlesArg == null ? null : Arrays.stream(
-                removeAllBetweenQuotes(requireBundlesArg)
-                    .split(",")
-            )
-            .filter(ManifestParser::filterOptionalDependencies);
-    }
-
-    private static boolean filterOptionalDependencies(@Nonnull String depString) {
-        return !depString.contains("resolution:=optional");
+        ManifestHeaderParser.Clause clause = clauses.get(0);
+        return new Pair<>(clause.name(), parseVersionRange(clause));
     }
 
     public static @Nonnull String trimBundleName(@Nonnull String bundleName) {
@@ -141,25 +158,37 @@ public class ManifestParser {
             .trim();
     }
 
-    public static DependencyInformation convertToDependencyInformation(String bundleInfoString, boolean isExport) {
-        Version version = null;
-        VersionRange versionRange = null;
-        Matcher matcher = VERSION_REGEX.matcher(bundleInfoString);
-        if (matcher.matches()) {
-            if (isExport) {
-                version = new Version(matcher.group(1));
-            } else {
-                versionRange = VersionRange.fromString(matcher.group(1));
-            }
+    @Nullable
+    private static Version parseVersion(@Nonnull ManifestHeaderParser.Clause clause) {
+        if (clause.version() == null) {
+            return null;
+        }
+        try {
+            return Version.of(clause.version());
+        } catch (IllegalArgumentException e) {
+            log.debug("Invalid version '{}' of '{}'", clause.version(), clause.name());
+            return null;
         }
-        return new DependencyInformation(trimBundleName(bundleInfoString), version, versionRange);
     }
 
-    public static Pair<String, VersionRange> convertDependencyInformationToVersionRangePair(DependencyInformation information) {
-        return new Pair<>(information.name(), information.range());
+    private static void addRequirement(
+        @Nonnull Map<String, VersionRange> requirements,
+        @Nonnull ManifestHeaderParser.Clause clause,
+        @Nonnull String bundleName
+    ) {
+        if (!BundleUtils.mergeRequirement(requirements, clause.name(), parseVersionRange(clause))) {
+            log.debug("Conflicting version ranges of '{}' in '{}', the first one is used", clause.name(), bundleName);
+        }
     }
-    public static Pair<String, Version> convertDependencyInformationToVersionPair(DependencyInformation information) {
-        return new Pair<>(information.name(), information.version());
+
+    @Nullable
+    private static VersionRange parseVersionRange(@Nonnull ManifestHeaderParser.Clause clause) {
+        try {
+            return VersionRange.fromString(clause.version());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.debug("Invalid version range '{}' of '{}'", clause.version(), clause.name());
+            return null;
+        }
     }
 
     public static @Nonnull List<String> parseBundleClasspath(@Nonnull Attributes attrs) {
@@ -172,49 +201,4 @@ public class ManifestParser {
             .filter(it -> !it.equals("."))
             .collect(Collectors.toList());
     }
-
-    private static Set<Pair<String, Version>> splitExportPackagesList(@Nullable String packagesList) {
-        if (packagesList == null) {
-            return Set.of();
-        }
-        Stream<DependencyInformation> dependencyInformationStream = getDependencyInformationStream(packagesList, true);
-        return dependencyInformationStream
-            .map(ManifestParser::convertDependencyInformationToVersionPair)
-            .collect(Collectors.toSet());
-    }
-
-    private static Set<Pair<String, VersionRange>> splitImportPackagesList(@Nullable String packagesList) {
-        if (packagesList == null) {
-            return Set.of();
-        }
-        Stream<DependencyInformation> dependencyInformationStream = getDependencyInformationStream(packagesList, false);
-        return dependencyInformationStream
-            .map(ManifestParser::convertDependencyInformationToVersionRangePair)
-            .collect(Collectors.toSet());
-    }
-
-    @NotNull
-    private static Stream<DependencyInformation> getDependencyInformationStream(@NotNull String packagesList, boolean isExport) {
-        var packagesListWithoutQuotes = removeAllBetweenQuotes(packagesList);
-        return Arrays.stream(packagesListWithoutQuotes.split(","))
-            .filter(ManifestParser::filterOptionalDependencies)
-            .map(it -> convertToDependencyInformation(it, isExport));
-    }
-
-    private static @Nonnull String removeAllBetweenQuotes(@Nonnull String str) {
-        var i = str.indexOf("\"");
-        while (i != -1) {
-            var j = str.indexOf("\"", i + 1);
-            if (j != -1) {
-                var data = str.substring(0, i);
-                var temp = str.substring(j + 1);
-                data += temp;
-                str = data;
-                i = str.indexOf("\"", i + 2);
-            } else {
-                break;
-            }
-        }
-        return str;
-    }
 }
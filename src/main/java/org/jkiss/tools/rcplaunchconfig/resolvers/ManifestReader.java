@@ -0,0 +1,96 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads only the main section of bundle manifests.
+ * Jars are opened as plain zip files, so signature verification is not set up
+ * and per-entry digest sections of signed bundles are not parsed.
+ */
+final class ManifestReader {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private ManifestReader() {
+    }
+
+    @Nonnull
+    static Manifest readFromFile(@Nonnull Path manifestPath) throws IOException {
+        try (var inputStream = Files.newInputStream(manifestPath)) {
+            return readMainSection(inputStream);
+        }
+    }
+
+    /**
+     * @return manifest or null if the jar doesn't contain one
+     */
+    @Nullable
+    static Manifest readFromJar(@Nonnull Path jarPath) throws IOException {
+        try (var zipFile = new ZipFile(jarPath.toFile())) {
+            var entry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+            if (entry == null) {
+                return null;
+            }
+            try (var inputStream = zipFile.getInputStream(entry)) {
+                return readMainSection(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Copies lines up to the first empty line, which terminates the main section.
+     */
+    @Nonnull
+    private static Manifest readMainSection(@Nonnull InputStream inputStream) throws IOException {
+        var in = new BufferedInputStream(inputStream, INITIAL_BUFFER_SIZE);
+        var mainSection = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        boolean lineStart = true;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                }
+                if (lineStart) {
+                    break;
+                }
+                mainSection.write('\n');
+                lineStart = true;
+            } else {
+                mainSection.write(c);
+                lineStart = false;
+            }
+        }
+        if (!lineStart) {
+            mainSection.write('\n');
+        }
+        return new Manifest(new ByteArrayInputStream(mainSection.toByteArray()));
+    }
+}
@@ -17,39 +17,69 @@
 package org.jkiss.tools.rcplaunchconfig.resolvers;
 
 import jakarta.annotation.Nonnull;
+import org.jkiss.tools.rcplaunchconfig.ConfigurationConstants;
+import org.jkiss.tools.rcplaunchconfig.util.PrefixClassifier;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Properties;
 
 public enum PackageChecker {
     INSTANCE;
 
-    private final Set<String> excludedPackages = Set.of(
+    public enum PackageClass {
+        EXCLUDED,
+        INCLUDED
+    }
+
+    private final List<String> defaultExcludedPackages = List.of(
         "org.h2",
-        "system.bundle"
-    );
-    private final List<String> excludedPackageGroups = List.of(
-        "java.",
-        "sun.",
-        "javax.net",
-        "javax.crypto",
-        "javax.security",
-        "javax.sql",
-        "javax.naming",
-        "javax.xml.",
-        "javax.xml.stream",
-        "javax.mail",
-        "javax.servlet",
-        "javax.activation",
-        "javax.management",
-        "javax.imageio",
-        "javax.script",
-        "org.xml.sax",
-        "org.w3c.dom",
-        "javax.crypto.interfaces"
+        "system.bundle",
+        "java.*",
+        "sun.*",
+        "javax.net*",
+        "javax.crypto*",
+        "javax.security*",
+        "javax.sql*",
+        "javax.naming*",
+        "javax.xml.*",
+        "javax.xml.stream*",
+        "javax.mail*",
+        "javax.servlet*",
+        "javax.activation*",
+        "javax.management*",
+        "javax.imageio*",
+        "javax.script*",
+        "org.xml.sax*",
+        "org.w3c.dom*",
+        "javax.crypto.interfaces*"
     );
 
+    private volatile PrefixClassifier<PackageClass> classifier = createClassifier(String.join(";", defaultExcludedPackages));
+
+    /**
+     * Replaces default exclusions with the patterns from settings if specified
+     */
+    public void init(@Nonnull Properties settings) {
+        String excludedPackages = settings.getProperty(ConfigurationConstants.EXCLUDED_PACKAGES_PARAM);
+        if (excludedPackages != null) {
+            classifier = createClassifier(excludedPackages);
+        }
+    }
+
     public boolean isPackageExcluded(@Nonnull String bundleName) {
-        return excludedPackages.contains(bundleName) || excludedPackageGroups.stream().anyMatch(bundleName::startsWith);
+        return classifier.classify(bundleName) == PackageClass.EXCLUDED;
+    }
+
+    @Nonnull
+    public Map<PackageClass, Long> getHits() {
+        return classifier.getHits();
+    }
+
+    @Nonnull
+    private static PrefixClassifier<PackageClass> createClassifier(@Nonnull String patterns) {
+        return PrefixClassifier.builder(PackageClass.INCLUDED)
+            .addAll(patterns, PackageClass.EXCLUDED, PackageClass.INCLUDED)
+            .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,173 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.Result;
+import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
+import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
+import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
+import org.jkiss.tools.rcplaunchconfig.xml.FeatureXmlDescriptor;
+import org.jkiss.utils.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resolves feature and bundle nodes of the product in fork/join tasks before the product is walked.
+ * Every feature and plugin declared by the product is a task, included features and required bundles fork their own tasks.
+ * Lookups, downloads and manifest parsing of independent feature subtrees run on all threads of the pool,
+ * while the walk which fills the result stays sequential and only hits already resolved nodes.
+ * This keeps bundle versions and feature attribution independent of the thread timing.
+ */
+public class ParallelGraphResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelGraphResolver.class);
+
+    private final ResolutionStatistics statistics;
+    private final P2BundleLookupCache lookupCache;
+    private final Set<String> visitedFeatures = ConcurrentHashMap.newKeySet();
+    private final Set<Pair<String, VersionRange>> visitedRequirements = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<BundleInfo>> selectedBundles = new ConcurrentHashMap<>();
+
+    private ParallelGraphResolver(@Nonnull ResolutionStatistics statistics, @Nonnull P2BundleLookupCache lookupCache) {
+        this.statistics = statistics;
+        this.lookupCache = lookupCache;
+    }
+
+    /**
+     * Resolves nodes of the features and plugins declared in the product file, returns when all subtrees are resolved
+     */
+    public static void resolveProductGraph(@Nonnull Result result, @Nonnull File productFile) throws IOException, XMLStreamException {
+        resolveGraph(result, FeatureXmlDescriptor.parse(productFile).entries());
+    }
+
+    /**
+     * Resolves nodes of the features, returns when all subtrees are resolved
+     */
+    public static void resolveFeaturesGraph(@Nonnull Result result, @Nonnull Collection<String> featureIds) {
+        List<FeatureXmlDescriptor.Entry> entries = new ArrayList<>(featureIds.size());
+        for (String featureId : featureIds) {
+            entries.add(new FeatureXmlDescriptor.Entry(true, featureId, null));
+        }
+        resolveGraph(result, entries);
+    }
+
+    private static void resolveGraph(@Nonnull Result result, @Nonnull List<FeatureXmlDescriptor.Entry> entries) {
+        ParallelGraphResolver resolver = new ParallelGraphResolver(result.getStatistics(), P2RepositoryManager.INSTANCE.getLookupCache());
+        result.getStatistics().setPhase(ResolutionStatistics.Phase.GRAPH);
+        try {
+            ForkJoinTask.invokeAll(resolver.createTasks(entries));
+        } finally {
+            result.getStatistics().setPhase(ResolutionStatistics.Phase.PRODUCT);
+        }
+    }
+
+    @Nonnull
+    private List<RecursiveAction> createTasks(@Nonnull List<FeatureXmlDescriptor.Entry> entries) {
+        List<RecursiveAction> tasks = new ArrayList<>(entries.size());
+        for (FeatureXmlDescriptor.Entry entry : entries) {
+            tasks.add(entry.feature() ? new FeatureTask(entry.id()) : new BundleTask(new Pair<>(entry.id(), null)));
+        }
+        return tasks;
+    }
+
+    /**
+     * Requirement can be skipped if it is satisfied by already selected bundle, as the product walk will skip it too
+     */
+    private boolean isSelected(@Nonnull Pair<String, VersionRange> requirement) {
+        Set<BundleInfo> bundles = selectedBundles.get(requirement.getFirst());
+        return bundles != null && bundles.stream().anyMatch(it -> VersionRange.isVersionsCompatible(requirement.getSecond(), it.getVersion()));
+    }
+
+    @SuppressWarnings("serial")
+    private class FeatureTask extends RecursiveAction {
+        private final String featureName;
+
+        FeatureTask(@Nonnull String featureName) {
+            this.featureName = featureName;
+        }
+
+        @Override
+        protected void compute() {
+            if (!visitedFeatures.add(featureName)) {
+                return;
+            }
+            ResolutionGraph.FeatureNode feature;
+            try {
+                feature = FeatureResolver.getFeatureNode(featureName, statistics);
+            } catch (IOException | XMLStreamException | RuntimeException e) {
+                // product walk resolves the node again and reports the error
+                log.debug("Failed to resolve feature node '{}'", featureName, e);
+                return;
+            }
+            if (feature != null) {
+                invokeAll(createTasks(feature.descriptor().entries()));
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class BundleTask extends RecursiveAction {
+        private final Pair<String, VersionRange> requirement;
+
+        BundleTask(@Nonnull Pair<String, VersionRange> requirement) {
+            this.requirement = requirement;
+        }
+
+        @Override
+        protected void compute() {
+            VersionRange range = requirement.getSecond();
+            if (PackageChecker.INSTANCE.isPackageExcluded(requirement.getFirst()) ||
+                (range != null && range.isEmpty()) ||
+                isSelected(requirement) ||
+                !visitedRequirements.add(requirement)
+            ) {
+                return;
+            }
+            BundleInfo bundle;
+            try {
+                bundle = PluginResolver.getBundleNode(requirement, statistics, lookupCache);
+            } catch (IOException | RuntimeException e) {
+                // product walk resolves the node again and reports the error
+                log.debug("Failed to resolve bundle node '{}'", requirement, e);
+                return;
+            }
+            if (bundle == null) {
+                return;
+            }
+            selectedBundles.computeIfAbsent(bundle.getBundleName(), it -> ConcurrentHashMap.newKeySet()).add(bundle);
+            List<BundleTask> tasks = new ArrayList<>();
+            for (Pair<String, VersionRange> requireBundle : bundle.getRequireBundles()) {
+                tasks.add(new BundleTask(requireBundle));
+            }
+            invokeAll(tasks);
+        }
+    }
+}
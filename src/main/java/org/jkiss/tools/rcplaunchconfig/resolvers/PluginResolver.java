@@ -36,103 +36,290 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 
 public class PluginResolver {
     private static final Logger log = LoggerFactory.getLogger(PluginResolver.class);
 
-    private static final Path MANIFEST_PATH = Paths.get("META-INF", "MANIFEST.MF");
-
     private static final Map<String, String> correctedFolderNames = Map.of(
     );
 
+    private record Requirement(
+        @Nonnull Pair<String, VersionRange> bundle,
+        @Nullable Integer startLevel,
+        @Nullable FeatureInfo feature,
+        @Nonnull ResolutionTrace.Reason reason,
+        @Nullable String requiredBy
+    ) {
+    }
+
+    /**
+     * Resolves plugin declared by the product
+     */
     public static void resolvePluginDependencies(
         @Nonnull Result result,
         @Nonnull Pair<String, VersionRange> bundleInfo,
         @Nullable Integer startLevel,
         P2BundleLookupCache cache
     ) throws IOException {
-        if (PackageChecker.INSTANCE.isPackageExcluded(bundleInfo.getFirst())) {
-            return;
+        resolvePluginDependencies(ResolutionContext.of(result), bundleInfo, startLevel, cache);
+    }
+
+    /**
+     * Resolves plugin declared by the context feature or by the product
+     */
+    public static void resolvePluginDependencies(
+        @Nonnull ResolutionContext context,
+        @Nonnull Pair<String, VersionRange> bundleInfo,
+        @Nullable Integer startLevel,
+        P2BundleLookupCache cache
+    ) throws IOException {
+        FeatureInfo currentFeature = context.feature();
+        if (currentFeature != null) {
+            resolvePluginDependencies(context, bundleInfo, startLevel, cache, ResolutionTrace.Reason.FEATURE, currentFeature.getFeatureName());
+        } else {
+            resolvePluginDependencies(context, bundleInfo, startLevel, cache, ResolutionTrace.Reason.PRODUCT, null);
         }
+    }
 
-        FeatureInfo currentFeature = FeatureResolver.getCurrentFeature(result.getProductPath());
+    /**
+     * Resolves the bundle and all its required bundles.
+     * Requirements are processed from an explicit work-list in the same depth-first order as they are declared.
+     *
+     * @param reason     why the bundle is required, for the resolution trace
+     * @param requiredBy name of the requiring bundle or feature
+     */
+    public static void resolvePluginDependencies(
+        @Nonnull ResolutionContext context,
+        @Nonnull Pair<String, VersionRange> bundleInfo,
+        @Nullable Integer startLevel,
+        P2BundleLookupCache cache,
+        @Nonnull ResolutionTrace.Reason reason,
+        @Nullable String requiredBy
+    ) throws IOException {
+        resolveWorkList(context.result(), new Requirement(bundleInfo, startLevel, context.feature(), reason, requiredBy), cache);
+    }
 
-        var previousParsedBundle = result.getBundleByInfoAndVersion(bundleInfo);
-        if (previousParsedBundle != null) {
-            if (currentFeature != null) {
-                currentFeature.addBundleDependency(previousParsedBundle);
-            }
-            if (previousParsedBundle.getStartLevel() == null && startLevel != null) {
-                // if previousParsedBundle does not have 'startLevel' — update it
-                var newParsedBundle = new BundleInfo(
-                    previousParsedBundle.getPath(),
-                    previousParsedBundle.getBundleName(),
-                    previousParsedBundle.getBundleVersion(),
-                    previousParsedBundle.getClasspathLibs(),
-                    previousParsedBundle.getRequireBundles(),
-                    previousParsedBundle.getReexportedBundles(),
-                    previousParsedBundle.getExportPackages(),
-                    previousParsedBundle.getImportPackages(),
-                    previousParsedBundle.getRequireFragments(),
-                    previousParsedBundle.getFragmentHost(),
-                    startLevel
-                );
-                result.addBundle(newParsedBundle);
+    private static void resolveWorkList(
+        @Nonnull Result result,
+        @Nonnull Requirement initialRequirement,
+        P2BundleLookupCache cache
+    ) throws IOException {
+        Deque<Requirement> workList = new ArrayDeque<>();
+        workList.push(initialRequirement);
+        while (!workList.isEmpty()) {
+            Requirement requirement = workList.pop();
+            BundleInfo addedBundle = resolveRequirement(result, requirement, cache);
+            if (addedBundle != null) {
+                List<Pair<String, VersionRange>> requireBundles = addedBundle.getRequireBundles();
+                for (int i = requireBundles.size() - 1; i >= 0; i--) {
+                    workList.push(new Requirement(
+                        requireBundles.get(i),
+                        null,
+                        requirement.feature(),
+                        ResolutionTrace.Reason.REQUIRE_BUNDLE,
+                        addedBundle.getBundleName()));
+                }
             }
-            return;
         }
+    }
+
+    /**
+     * Returns the newly added bundle, or null if requirement is already satisfied or can't be resolved
+     */
+    @Nullable
+    private static BundleInfo resolveRequirement(
+        @Nonnull Result result,
+        @Nonnull Requirement requirement,
+        P2BundleLookupCache cache
+    ) throws IOException {
+        ResolutionStatistics statistics = result.getStatistics();
+        statistics.increment(ResolutionStatistics.Counter.REQUIREMENTS);
+        Pair<String, VersionRange> bundleInfo = requirement.bundle();
+        if (PackageChecker.INSTANCE.isPackageExcluded(bundleInfo.getFirst())) {
+            statistics.increment(ResolutionStatistics.Counter.EXCLUDED);
+            return null;
+        }
+        if (bundleInfo.getSecond() != null && bundleInfo.getSecond().isEmpty()) {
+            log.warn("No version of '{}' satisfies range '{}' required by '{}'", bundleInfo.getFirst(), bundleInfo.getSecond(), requirement.requiredBy());
+            statistics.increment(ResolutionStatistics.Counter.UNRESOLVED);
+            return null;
+        }
+        if (useResolvedBundle(result, requirement)) {
+            return null;
+        }
+
+        ResolutionTrace.Timings timings = new ResolutionTrace.Timings();
+        BundleInfo newBundle = ResolutionGraph.INSTANCE.getBundle(bundleInfo, statistics, timings, () -> selectBundle(bundleInfo, statistics, timings, cache));
+        if (newBundle == null) {
+            statistics.increment(ResolutionStatistics.Counter.UNRESOLVED);
+            return null;
+        }
+        return addSelectedBundle(result, requirement, newBundle, timings, cache);
+    }
+
+    /**
+     * Returns true if requirement is satisfied by the bundle which is already in the result
+     */
+    private static boolean useResolvedBundle(@Nonnull Result result, @Nonnull Requirement requirement) {
+        var previousParsedBundle = result.getBundleByInfoAndVersion(requirement.bundle());
+        if (previousParsedBundle == null) {
+            return false;
+        }
+        result.getStatistics().increment(ResolutionStatistics.Counter.ALREADY_RESOLVED);
+        if (requirement.feature() != null) {
+            requirement.feature().addBundleDependency(previousParsedBundle);
+        }
+        if (previousParsedBundle.getStartLevel() == null && requirement.startLevel() != null) {
+            // if previousParsedBundle does not have 'startLevel' — update it
+            result.addBundle(copyWithStartLevel(previousParsedBundle, requirement.startLevel()));
+        }
+        return true;
+    }
+
+    @Nonnull
+    private static BundleInfo addSelectedBundle(
+        @Nonnull Result result,
+        @Nonnull Requirement requirement,
+        @Nonnull BundleInfo selectedBundle,
+        @Nonnull ResolutionTrace.Timings timings,
+        P2BundleLookupCache cache
+    ) {
+        BundleInfo newBundle = selectedBundle;
+        if (!(newBundle instanceof RemoteP2BundleInfo)) {
+            // Local bundles are copied for every result, they collect fragments of the product
+            newBundle = copyWithStartLevel(newBundle, requirement.startLevel());
+        }
+        result.getStatistics().increment(ResolutionStatistics.Counter.BUNDLES_ADDED);
+        addBundle(result, newBundle, cache);
+        result.getTrace().addBundle(newBundle, requirement.reason(), requirement.requiredBy(), null, timings);
+        if (requirement.feature() != null) {
+            requirement.feature().addBundleDependency(newBundle);
+        }
+        return newBundle;
+    }
 
+    /**
+     * Resolves the bundle node of the requirement without adding it to a result
+     */
+    @Nullable
+    static BundleInfo getBundleNode(
+        @Nonnull Pair<String, VersionRange> bundleInfo,
+        @Nonnull ResolutionStatistics statistics,
+        P2BundleLookupCache cache
+    ) throws IOException {
+        ResolutionTrace.Timings timings = new ResolutionTrace.Timings();
+        return ResolutionGraph.INSTANCE.getBundle(bundleInfo, statistics, timings, () -> selectBundle(bundleInfo, statistics, timings, cache));
+    }
+
+    /**
+     * Adds the bundle recorded in a feature closure. Local bundles are copied, as for every walk,
+     * the bundle of the same version is replaced only to update the start level.
+     */
+    @Nonnull
+    static BundleInfo addClosureBundle(
+        @Nonnull Result result,
+        @Nonnull BundleInfo bundleInfo,
+        P2BundleLookupCache cache
+    ) {
+        BundleInfo newBundle = bundleInfo instanceof RemoteP2BundleInfo
+            ? bundleInfo
+            : copyWithStartLevel(bundleInfo, bundleInfo.getStartLevel());
+        Set<BundleInfo> versions = result.getBundlesByName(bundleInfo.getBundleName());
+        if (versions != null && versions.stream().anyMatch(it -> it.getVersion().equals(bundleInfo.getVersion()))) {
+            result.addBundle(newBundle);
+        } else {
+            addBundle(result, newBundle, cache);
+        }
+        return newBundle;
+    }
+
+    /**
+     * Chooses local or remote bundle for the requirement, downloads remote bundle if needed
+     */
+    @Nullable
+    private static BundleInfo selectBundle(
+        @Nonnull Pair<String, VersionRange> bundleInfo,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull ResolutionTrace.Timings timings,
+        P2BundleLookupCache cache
+    ) {
+        timings.resolved = true;
         var pluginsFoldersPaths = PathsManager.INSTANCE.getBundlesLocations();
 
         List<BundleInfo> bundleInfos = new ArrayList<>();
         for (Path pluginsFoldersPath : pluginsFoldersPaths) {
+            statistics.increment(ResolutionStatistics.Counter.LOCAL_LOOKUPS);
             var correctedFolderName = correctFolderName(bundleInfo.getFirst());
+            long lookupStart = System.nanoTime();
             File pluginJarOrFolder = FileUtils.findFirstChildByPackageName(pluginsFoldersPath, correctedFolderName);
+            timings.localLookup += System.nanoTime() - lookupStart;
             if (pluginJarOrFolder != null) {
-                BundleInfo info = extractBundleInfo(pluginJarOrFolder, startLevel);
+                long parseStart = System.nanoTime();
+                BundleInfo info = extractBundleInfo(pluginJarOrFolder, null);
+                timings.parse += System.nanoTime() - parseStart;
                 if (info != null) {
-                    if (VersionRange.isVersionsCompatible(bundleInfo.getSecond(), new Version(info.getBundleVersion()))) {
+                    if (VersionRange.isVersionsCompatible(bundleInfo.getSecond(), info.getVersion())) {
                         bundleInfos.add(info);
                     }
                 }
             }
         }
-        if (bundleInfos.size() == 1) {
-            Optional<RemoteP2BundleInfo> maxVersionRemoteBundle = BundleUtils.getMaxVersionRemoteBundle(bundleInfo, cache);
-            if (maxVersionRemoteBundle.isPresent() && BundleUtils.isRemoteBundleVersionGreater(maxVersionRemoteBundle.get(), bundleInfos.get(0))) {
-                maxVersionRemoteBundle.get().resolveBundle();
-                parseBundleInfo(result, maxVersionRemoteBundle.get(), cache);
-            } else {
-                parseBundleInfo(result, bundleInfos.get(0), cache);
-            }
-        } else if (bundleInfos.isEmpty()) {
-
-            Optional<RemoteP2BundleInfo> remoteP2BundleInfos = BundleUtils.getMaxVersionRemoteBundle(bundleInfo, cache);
-            if (remoteP2BundleInfos.isEmpty()) {
-                log.error("Couldn't find plugin '{}'", bundleInfo);
-            } else {
-                remoteP2BundleInfos.stream().findFirst().get().resolveBundle();
-                parseBundleInfo(result, remoteP2BundleInfos.stream().findFirst().get(), cache);
-            }
-
-        } else {
+        if (bundleInfos.size() > 1) {
             var bundlesPaths = bundleInfos.stream()
                 .map(it -> it.getPath().toString())
                 .collect(Collectors.joining("\n  "));
             log.debug("Found multiple plugins '{}'. First will be used.\n  {}", bundleInfo, bundlesPaths);
-            parseBundleInfo(result, bundleInfos.get(0), cache);
+            return bundleInfos.get(0);
+        }
+        statistics.increment(ResolutionStatistics.Counter.REMOTE_LOOKUPS);
+        long remoteLookupStart = System.nanoTime();
+        Optional<RemoteP2BundleInfo> maxVersionRemoteBundle = BundleUtils.getMaxVersionRemoteBundle(bundleInfo, cache);
+        timings.remoteLookup += System.nanoTime() - remoteLookupStart;
+        if (bundleInfos.size() == 1) {
+            if (maxVersionRemoteBundle.isPresent() && BundleUtils.isRemoteBundleVersionGreater(maxVersionRemoteBundle.get(), bundleInfos.get(0))) {
+                return resolveRemoteBundle(maxVersionRemoteBundle.get(), statistics, timings);
+            }
+            return bundleInfos.get(0);
         }
-        if (currentFeature != null && !bundleInfos.isEmpty()) {
-            currentFeature.addBundleDependency(previousParsedBundle);
+        if (maxVersionRemoteBundle.isEmpty()) {
+            log.error("Couldn't find plugin '{}'", bundleInfo);
+            return null;
         }
+        return resolveRemoteBundle(maxVersionRemoteBundle.get(), statistics, timings);
+    }
+
+    @Nonnull
+    private static BundleInfo resolveRemoteBundle(
+        @Nonnull RemoteP2BundleInfo remoteBundle,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull ResolutionTrace.Timings timings
+    ) {
+        statistics.increment(ResolutionStatistics.Counter.REMOTE_RESOLVES);
+        long downloadStart = System.nanoTime();
+        remoteBundle.resolveBundle();
+        timings.download += System.nanoTime() - downloadStart;
+        return remoteBundle;
+    }
+
+    @Nonnull
+    private static BundleInfo copyWithStartLevel(@Nonnull BundleInfo bundleInfo, @Nullable Integer startLevel) {
+        return new BundleInfo(
+            bundleInfo.getPath(),
+            bundleInfo.getBundleName(),
+            bundleInfo.getBundleVersion(),
+            bundleInfo.getClasspathLibs(),
+            bundleInfo.getRequireBundles(),
+            bundleInfo.getReexportedBundles(),
+            bundleInfo.getExportPackages(),
+            bundleInfo.getImportPackages(),
+            bundleInfo.getRequireFragments(),
+            bundleInfo.getFragmentHost(),
+            startLevel
+        );
     }
 
     private static @Nonnull String correctFolderName(@Nonnull String nameToCorrect) {
@@ -147,24 +334,7 @@ public class PluginResolver {
         @Nullable Integer startLevel
     ) {
         try {
-            if (pluginJarOrFolder.isDirectory()) {
-                var manifestFile = pluginJarOrFolder.toPath().resolve(MANIFEST_PATH).toFile();
-                if (!manifestFile.exists()) {
-                    log.error("Cannot find '{}'", manifestFile.getPath());
-                }
-                try (var inputStream = new FileInputStream(manifestFile)) {
-                    var manifest = new Manifest(inputStream);
-                    return ManifestParser.parseManifest(pluginJarOrFolder.toPath(), startLevel, manifest);
-                }
-            } else {
-                try (var jarFile = new JarFile(pluginJarOrFolder)) {
-                    var manifest = jarFile.getManifest();
-                    return ManifestParser.parseManifest(pluginJarOrFolder.toPath(), startLevel, manifest);
-                } catch (Exception e) {
-                    log.error("Error during opening jar file for " + pluginJarOrFolder);
-                    throw e;
-                }
-            }
+            return ManifestParser.readBundleInfo(pluginJarOrFolder.toPath(), startLevel);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -173,23 +343,23 @@ public class PluginResolver {
     public static void resolveTestBundlesAndLibraries(Result result) throws IOException {
         PathsManager manager = PathsManager.INSTANCE;
         P2BundleLookupCache lookupCache = P2RepositoryManager.INSTANCE.getLookupCache();
+        ResolutionContext context = ResolutionContext.of(result);
+        result.getStatistics().setPhase(ResolutionStatistics.Phase.TESTS);
         Collection<Path> testBundlesPaths = manager.getTestBundlesPaths();
         for (Path testBundlesPath : testBundlesPaths) {
             if (testBundlesPath.toFile().exists() && testBundlesPath.toFile().isDirectory()) {
                 List<BundleInfo> bundlesToResolve = new ArrayList<>();
                 for (File file : testBundlesPath.toFile().listFiles()) {
                     if (file.isDirectory()) {
-                        var manifestFile = file.toPath().resolve(MANIFEST_PATH).toFile();
+                        var manifestFile = file.toPath().resolve(ManifestParser.MANIFEST_PATH).toFile();
                         if (!manifestFile.exists()) {
                             continue;
                         }
-                        try (var inputStream = new FileInputStream(manifestFile)) {
-                            var manifest = new Manifest(inputStream);
-                            BundleInfo bundleInfo = ManifestParser.parseManifest(file.toPath(), null, manifest);
-                            if (bundleInfo != null) {
-                                result.addBundle(bundleInfo);
-                                bundlesToResolve.add(bundleInfo);
-                            }
+                        BundleInfo bundleInfo = ManifestParser.readBundleInfo(file.toPath(), null);
+                        if (bundleInfo != null) {
+                            result.addBundle(bundleInfo);
+                            bundlesToResolve.add(bundleInfo);
+                            result.getTrace().addBundle(bundleInfo, ResolutionTrace.Reason.TEST, null, null, null);
                         }
                     }
                 }
@@ -214,6 +384,7 @@ public class PluginResolver {
                                 for (BundleInfo bundleInfo : bundleByName) {
                                     result.addBundle(bundleInfo);
                                     bundlesToResolve.add(bundleInfo);
+                                    result.getTrace().addBundle(bundleInfo, ResolutionTrace.Reason.TEST, null, null, null);
                                 }
                             } else {
                                 bundleByName = new HashSet<>(bundleInfos);
@@ -225,6 +396,7 @@ public class PluginResolver {
                                     for (BundleInfo bundleInfo : bundleByName) {
                                         result.addBundle(bundleInfo);
                                         bundlesToResolve.add(bundleInfo);
+                                        result.getTrace().addBundle(bundleInfo, ResolutionTrace.Reason.TEST, null, null, null);
                                     }
                                 }
                             }
@@ -238,10 +410,10 @@ public class PluginResolver {
                 }
                 for (BundleInfo bundleInfo : bundlesToResolve) {
                     for (Pair<String, VersionRange> requireBundle : bundleInfo.getRequireBundles()) {
-                        resolvePluginDependencies(result, requireBundle, null, lookupCache);
+                        resolvePluginDependencies(context, requireBundle, null, lookupCache, ResolutionTrace.Reason.REQUIRE_BUNDLE, bundleInfo.getBundleName());
                     }
                     if (bundleInfo.getFragmentHost() != null) {
-                        resolvePluginDependencies(result, bundleInfo.getFragmentHost(), null, lookupCache);
+                        resolvePluginDependencies(context, bundleInfo.getFragmentHost(), null, lookupCache, ResolutionTrace.Reason.FRAGMENT_HOST, bundleInfo.getBundleName());
                     }
                 }
             }
@@ -250,11 +422,11 @@ public class PluginResolver {
 
     }
 
-    private static void parseBundleInfo(
+    private static void addBundle(
         @Nonnull Result result,
         @Nonnull BundleInfo bundleInfo,
         P2BundleLookupCache cache
-    ) throws IOException {
+    ) {
         result.addBundle(bundleInfo);
         if (bundleInfo.getFragmentHost() != null) {
             BundleInfo hostBundle = getHostBundle(result, bundleInfo, cache);
@@ -264,9 +436,6 @@ public class PluginResolver {
                 log.error("Fragment host bundle not found");
             }
         }
-        for (var requireBundle : bundleInfo.getRequireBundles()) {
-            PluginResolver.resolvePluginDependencies(result, requireBundle, null, cache);
-        }
     }
 
     @org.jkiss.code.Nullable
@@ -278,11 +447,11 @@ public class PluginResolver {
         }
         Set<BundleInfo> hostBundles = result.getBundlesByName(bundleInfo.getFragmentHost().getFirst());
         BundleInfo hostBundle = null;
-        if (CommonUtils.isEmpty(hostBundles) || hostBundles.stream().noneMatch(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), new Version(it.getBundleVersion())))) {
+        if (CommonUtils.isEmpty(hostBundles) || hostBundles.stream().noneMatch(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), it.getVersion()))) {
             hostBundle = cache.getRemoteBundlesByName(bundleInfo.getFragmentHost().getFirst()).stream().filter(it -> VersionRange
-                .isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), new Version(it.getBundleVersion()))).findFirst().orElse(null);
-        } else if (hostBundles.stream().anyMatch(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), new Version(it.getBundleVersion())))) {
-            hostBundle = hostBundles.stream().filter(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), new Version(it.getBundleVersion()))).findFirst().get();
+                .isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), it.getVersion())).findFirst().orElse(null);
+        } else if (hostBundles.stream().anyMatch(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), it.getVersion()))) {
+            hostBundle = hostBundles.stream().filter(it -> VersionRange.isVersionsCompatible(bundleInfo.getFragmentHost().getSecond(), it.getVersion())).findFirst().get();
         }
         return hostBundle;
     }
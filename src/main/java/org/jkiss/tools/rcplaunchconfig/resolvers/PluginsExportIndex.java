@@ -0,0 +1,110 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.util.Version;
+import org.jkiss.utils.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exported packages of the bundles from the Eclipse plugins folder.
+ * The folder is scanned once and shared between all products, bundles downloaded later are registered on top of it.
+ */
+public enum PluginsExportIndex {
+    INSTANCE;
+
+    private static final Logger log = LoggerFactory.getLogger(PluginsExportIndex.class);
+
+    private final Set<Path> knownBundles = ConcurrentHashMap.newKeySet();
+    private final Map<String, Queue<Pair<BundleInfo, Version>>> registeredExports = new ConcurrentHashMap<>();
+    private volatile Map<String, List<Pair<BundleInfo, Version>>> indexedExports = Map.of();
+
+    /**
+     * Reads manifests of all bundles in the folder in parallel, should be called once before products resolution
+     */
+    public void build(@Nonnull Path eclipsePluginsPath) {
+        var children = eclipsePluginsPath.toFile().listFiles();
+        if (children == null) {
+            log.error("Couldn't get '{}'s children", eclipsePluginsPath);
+            return;
+        }
+        Arrays.sort(children);
+        indexedExports = Arrays.stream(children)
+            .parallel()
+            .filter(it -> !".DS_Store".equals(it.getName()))
+            .filter(it -> knownBundles.add(it.toPath()))
+            .map(PluginsExportIndex::readBundleInfo)
+            .filter(Objects::nonNull)
+            .flatMap(PluginsExportIndex::getExports)
+            .collect(Collectors.collectingAndThen(
+                Collectors.groupingBy(Pair::getFirst, Collectors.mapping(Pair::getSecond, Collectors.toUnmodifiableList())),
+                Collections::unmodifiableMap
+            ));
+        log.debug("{} exported packages found in '{}'", indexedExports.size(), eclipsePluginsPath);
+    }
+
+    /**
+     * Registers bundle which was added to the plugins folder after the index was built
+     */
+    public void register(@Nonnull BundleInfo bundleInfo) {
+        if (bundleInfo.getPath() != null && !knownBundles.add(bundleInfo.getPath())) {
+            return;
+        }
+        getExports(bundleInfo).forEach(it -> registeredExports
+            .computeIfAbsent(it.getFirst(), key -> new ConcurrentLinkedQueue<>())
+            .add(it.getSecond()));
+    }
+
+    @Nonnull
+    public Collection<Pair<BundleInfo, Version>> getExportingBundles(@Nonnull String packageName) {
+        List<Pair<BundleInfo, Version>> indexed = indexedExports.getOrDefault(packageName, List.of());
+        Queue<Pair<BundleInfo, Version>> registered = registeredExports.get(packageName);
+        if (registered == null) {
+            return indexed;
+        }
+        List<Pair<BundleInfo, Version>> result = new ArrayList<>(indexed);
+        result.addAll(registered);
+        return result;
+    }
+
+    private static BundleInfo readBundleInfo(@Nonnull File folderOrJar) {
+        try {
+            return ManifestParser.readBundleInfo(folderOrJar.toPath(), null);
+        } catch (IOException e) {
+            log.error("Error reading manifest of '{}'", folderOrJar, e);
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static Stream<Pair<String, Pair<BundleInfo, Version>>> getExports(@Nonnull BundleInfo bundleInfo) {
+        return bundleInfo.getExportPackages().stream()
+            .map(it -> new Pair<>(it.getFirst(), new Pair<>(bundleInfo, it.getSecond())));
+    }
+}
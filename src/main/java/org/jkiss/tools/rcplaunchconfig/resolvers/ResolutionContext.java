@@ -0,0 +1,45 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.FeatureInfo;
+import org.jkiss.tools.rcplaunchconfig.Result;
+
+/**
+ * Result being resolved and the feature which declares the resolved dependencies.
+ * Context is immutable, every included feature gets its own context so the entries of a feature
+ * do not depend on the resolution order.
+ *
+ * @param feature feature the resolved bundles are attributed to, null for dependencies of the product itself
+ */
+public record ResolutionContext(@Nonnull Result result, @Nullable FeatureInfo feature) {
+
+    /**
+     * Context of dependencies declared by the product
+     */
+    @Nonnull
+    public static ResolutionContext of(@Nonnull Result result) {
+        return new ResolutionContext(result, null);
+    }
+
+    @Nonnull
+    public ResolutionContext withFeature(@Nonnull FeatureInfo feature) {
+        return new ResolutionContext(result, feature);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
+import org.jkiss.tools.rcplaunchconfig.xml.FeatureXmlDescriptor;
+import org.jkiss.utils.Pair;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feature and bundle nodes shared by all products of the run.
+ * Each node is resolved (looked up, downloaded and parsed) exactly once, products only walk resolved nodes.
+ */
+public enum ResolutionGraph {
+    INSTANCE;
+
+    /**
+     * Resolved feature, its feature.xml and the declared dependencies
+     */
+    public record FeatureNode(@Nonnull File featureXmlFile, @Nonnull FeatureXmlDescriptor descriptor) {
+    }
+
+    /**
+     * Resolved value, null if it was not found, and durations of its resolution
+     */
+    private record Node<T>(@Nullable T value, @Nonnull ResolutionTrace.Timings timings) {
+    }
+
+    @FunctionalInterface
+    interface NodeResolver<T> {
+        @Nullable
+        T resolve() throws IOException, XMLStreamException;
+    }
+
+    private final Map<String, CompletableFuture<Node<FeatureNode>>> features = new ConcurrentHashMap<>();
+    private final Map<Pair<String, VersionRange>, CompletableFuture<Node<BundleInfo>>> bundles = new ConcurrentHashMap<>();
+    private final Map<FeatureClosure.Key, CompletableFuture<FeatureClosure>> closures = new ConcurrentHashMap<>();
+
+    /**
+     * Drops all nodes, must be called when workspace bundles or features may have changed
+     */
+    public void reset() {
+        features.clear();
+        bundles.clear();
+        closures.clear();
+    }
+
+    /**
+     * Drops nodes of the bundles and features containing the changed files, other nodes are kept
+     */
+    public void invalidate(@Nonnull Collection<Path> changedFiles) {
+        // closures depend on manifests of all bundles below the feature
+        closures.clear();
+        bundles.values().removeIf(node -> {
+            BundleInfo bundle = node.isDone() && !node.isCompletedExceptionally() ? node.join().value() : null;
+            Path bundlePath = bundle != null ? bundle.getPath() : null;
+            return bundlePath != null && containsAny(bundlePath, changedFiles);
+        });
+        features.values().removeIf(node -> {
+            FeatureNode feature = node.isDone() && !node.isCompletedExceptionally() ? node.join().value() : null;
+            File featureXmlFile = feature != null ? feature.featureXmlFile() : null;
+            return featureXmlFile != null && containsAny(featureXmlFile.toPath(), changedFiles);
+        });
+    }
+
+    private static boolean containsAny(@Nonnull Path path, @Nonnull Collection<Path> files) {
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        for (Path file : files) {
+            if (file.toAbsolutePath().normalize().startsWith(normalizedPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param timings filled by the resolver, or copied from the node if it is already resolved
+     */
+    @Nullable
+    FeatureNode getFeature(
+        @Nonnull String featureName,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull ResolutionTrace.Timings timings,
+        @Nonnull NodeResolver<FeatureNode> resolver
+    ) throws IOException, XMLStreamException {
+        return resolveOnce(features, featureName, statistics, timings, resolver);
+    }
+
+    /**
+     * @param timings filled by the resolver, or copied from the node if it is already resolved
+     */
+    @Nullable
+    BundleInfo getBundle(
+        @Nonnull Pair<String, VersionRange> requirement,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull ResolutionTrace.Timings timings,
+        @Nonnull NodeResolver<BundleInfo> resolver
+    ) throws IOException {
+        try {
+            return resolveOnce(bundles, requirement, statistics, timings, resolver);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the closure recorded for the feature, records it if there is none.
+     * Returns null if another thread is recording the closure, or it is being recorded for an enclosing feature.
+     */
+    @Nullable
+    FeatureClosure getClosure(
+        @Nonnull FeatureClosure.Key key,
+        @Nonnull NodeResolver<FeatureClosure> recorder
+    ) throws IOException, XMLStreamException {
+        CompletableFuture<FeatureClosure> closure = closures.get(key);
+        if (closure != null) {
+            return getRecordedClosure(closure);
+        }
+        CompletableFuture<FeatureClosure> newClosure = new CompletableFuture<>();
+        closure = closures.putIfAbsent(key, newClosure);
+        if (closure != null) {
+            return getRecordedClosure(closure);
+        }
+        try {
+            FeatureClosure value = recorder.resolve();
+            newClosure.complete(value);
+            return value;
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            newClosure.completeExceptionally(e);
+            closures.remove(key, newClosure);
+            throw e;
+        }
+    }
+
+    @Nullable
+    private static FeatureClosure getRecordedClosure(@Nonnull CompletableFuture<FeatureClosure> closure) {
+        // waiting for a closure could deadlock on included features recorded by other threads
+        return closure.isDone() && !closure.isCompletedExceptionally() ? closure.join() : null;
+    }
+
+    @Nullable
+    private static <K, T> T resolveOnce(
+        @Nonnull Map<K, CompletableFuture<Node<T>>> nodes,
+        @Nonnull K key,
+        @Nonnull ResolutionStatistics statistics,
+        @Nonnull ResolutionTrace.Timings timings,
+        @Nonnull NodeResolver<T> resolver
+    ) throws IOException, XMLStreamException {
+        CompletableFuture<Node<T>> node = nodes.get(key);
+        if (node == null) {
+            CompletableFuture<Node<T>> newNode = new CompletableFuture<>();
+            node = nodes.putIfAbsent(key, newNode);
+            if (node == null) {
+                // this thread resolves the node, others wait for it
+                try {
+                    T value = resolver.resolve();
+                    newNode.complete(new Node<>(value, timings));
+                    return value;
+                } catch (IOException | XMLStreamException | RuntimeException e) {
+                    newNode.completeExceptionally(e);
+                    nodes.remove(key, newNode);
+                    throw e;
+                }
+            }
+        }
+        statistics.increment(ResolutionStatistics.Counter.MEMO_HITS);
+        try {
+            Node<T> resolvedNode = node.join();
+            timings.copyDurations(resolvedNode.timings());
+            return resolvedNode.value();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            } else if (e.getCause() instanceof XMLStreamException xmlStreamException) {
+                throw xmlStreamException;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lookup counters of a single product resolution, grouped by resolution phase
+ */
+public class ResolutionStatistics {
+
+    public enum Phase {
+        GRAPH,
+        PRODUCT,
+        IMPORTS,
+        TESTS
+    }
+
+    public enum Counter {
+        /** Requirements taken from the work-list */
+        REQUIREMENTS,
+        /** Requirements skipped by package exclusions */
+        EXCLUDED,
+        /** Requirements satisfied by already resolved bundles */
+        ALREADY_RESOLVED,
+        /** Bundle selections answered by the memoized decisions */
+        MEMO_HITS,
+        /** Plugin folders lookups */
+        LOCAL_LOOKUPS,
+        /** Remote repositories lookups */
+        REMOTE_LOOKUPS,
+        /** Remote bundles resolution (download if missing) */
+        REMOTE_RESOLVES,
+        /** Bundles added to the result */
+        BUNDLES_ADDED,
+        /** Requirements which could not be resolved */
+        UNRESOLVED,
+        /** Features added from the closures recorded for the earlier products */
+        CLOSURE_SPLICES,
+        /** Import-Package entries checked */
+        IMPORT_PACKAGES,
+        /** Import-Package resolution waves */
+        IMPORT_WAVES
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final AtomicLongArray counters = new AtomicLongArray(PHASES.length * COUNTERS.length);
+    private volatile Phase phase = Phase.PRODUCT;
+
+    public void setPhase(@Nonnull Phase phase) {
+        this.phase = phase;
+    }
+
+    public void increment(@Nonnull Counter counter) {
+        counters.incrementAndGet(phase.ordinal() * COUNTERS.length + counter.ordinal());
+    }
+
+    public long get(@Nonnull Phase phase, @Nonnull Counter counter) {
+        return counters.get(phase.ordinal() * COUNTERS.length + counter.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : PHASES) {
+            StringBuilder phaseCounters = new StringBuilder();
+            for (Counter counter : COUNTERS) {
+                long value = get(phase, counter);
+                if (value != 0) {
+                    if (!phaseCounters.isEmpty()) {
+                        phaseCounters.append(", ");
+                    }
+                    phaseCounters.append(counter.name().toLowerCase(Locale.ENGLISH)).append('=').append(value);
+                }
+            }
+            if (!phaseCounters.isEmpty()) {
+                if (!sb.isEmpty()) {
+                    sb.append("; ");
+                }
+                sb.append(phase.name().toLowerCase(Locale.ENGLISH)).append(": ").append(phaseCounters);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.jkiss.tools.rcplaunchconfig.BundleInfo;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records why each bundle and feature was added to the product and how long its resolution took.
+ * Disabled by default, see {@code -trace} parameter.
+ */
+public class ResolutionTrace {
+
+    public static final String REPORT_FILE_NAME = "resolution-trace.csv";
+
+    public enum Reason {
+        /** Declared in the product file */
+        PRODUCT,
+        /** Included into the feature */
+        FEATURE,
+        /** Required by Require-Bundle header */
+        REQUIRE_BUNDLE,
+        /** Exports package imported by Import-Package header */
+        IMPORT_PACKAGE,
+        /** Host of the fragment */
+        FRAGMENT_HOST,
+        /** Test bundle or library */
+        TEST
+    }
+
+    /**
+     * Durations of a node resolution, filled only by the thread which resolved the node
+     */
+    static final class Timings {
+        long localLookup;
+        long remoteLookup;
+        long download;
+        long parse;
+        boolean resolved;
+
+        /**
+         * Copies durations of the node resolved earlier, the node stays cached
+         */
+        void copyDurations(@Nonnull Timings resolvedTimings) {
+            localLookup = resolvedTimings.localLookup;
+            remoteLookup = resolvedTimings.remoteLookup;
+            download = resolvedTimings.download;
+            parse = resolvedTimings.parse;
+        }
+    }
+
+    private record Entry(
+        @Nonnull String type,
+        @Nonnull String name,
+        @Nullable String version,
+        @Nonnull Reason reason,
+        @Nullable String requiredBy,
+        @Nullable String via,
+        @Nullable Timings timings
+    ) {
+    }
+
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private volatile boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void addBundle(
+        @Nonnull BundleInfo bundleInfo,
+        @Nonnull Reason reason,
+        @Nullable String requiredBy,
+        @Nullable String via,
+        @Nullable Timings timings
+    ) {
+        if (enabled) {
+            entries.add(new Entry("bundle", bundleInfo.getBundleName(), bundleInfo.getBundleVersion(), reason, requiredBy, via, timings));
+        }
+    }
+
+    void addFeature(
+        @Nonnull String featureName,
+        @Nonnull Reason reason,
+        @Nullable String requiredBy,
+        @Nullable Timings timings
+    ) {
+        if (enabled) {
+            entries.add(new Entry("feature", featureName, null, reason, requiredBy, null, timings));
+        }
+    }
+
+    /**
+     * Copies entries of the nodes added from a recorded feature closure
+     */
+    void addAll(@Nonnull ResolutionTrace closureTrace) {
+        if (enabled) {
+            entries.addAll(closureTrace.entries);
+        }
+    }
+
+    /**
+     * Report with one line per added node. Durations are in milliseconds. Cached nodes were resolved before the walk,
+     * by the graph tasks or another product, their durations are the durations of that resolution.
+     */
+    @Nonnull
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("type,name,version,reason,required_by,via,cached,local_lookup_ms,remote_lookup_ms,download_ms,parse_ms\n");
+        for (Entry entry : entries) {
+            Timings timings = entry.timings();
+            boolean cached = timings != null && !timings.resolved;
+            csv.append(entry.type()).append(',')
+                .append(escapeCsv(entry.name())).append(',')
+                .append(escapeCsv(entry.version())).append(',')
+                .append(entry.reason().name().toLowerCase(Locale.ENGLISH)).append(',')
+                .append(escapeCsv(entry.requiredBy())).append(',')
+                .append(escapeCsv(entry.via())).append(',')
+                .append(cached).append(',')
+                .append(formatDuration(timings == null ? 0 : timings.localLookup)).append(',')
+                .append(formatDuration(timings == null ? 0 : timings.remoteLookup)).append(',')
+                .append(formatDuration(timings == null ? 0 : timings.download)).append(',')
+                .append(formatDuration(timings == null ? 0 : timings.parse)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Quotes the field containing separators, quotes or line breaks, as described by RFC 4180
+     */
+    @Nonnull
+    private static String escapeCsv(@Nullable String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    @Nonnull
+    private static String formatDuration(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+}
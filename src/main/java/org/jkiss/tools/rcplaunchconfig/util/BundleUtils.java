@@ -17,13 +17,17 @@
 package org.jkiss.tools.rcplaunchconfig.util;
 
 import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
 import org.jkiss.tools.rcplaunchconfig.p2.RemoteP2Feature;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2BundleInfo;
 import org.jkiss.utils.Pair;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -41,6 +45,37 @@ public class BundleUtils {
         return true;
     }
 
+    /**
+     * Adds the requirement, requirements of the same name are merged into the intersection of their ranges.
+     *
+     * @return false if ranges have no common version, the previous requirement is kept then
+     */
+    public static boolean mergeRequirement(
+        @NotNull Map<String, VersionRange> requirements,
+        @NotNull String name,
+        @Nullable VersionRange range
+    ) {
+        if (!requirements.containsKey(name)) {
+            requirements.put(name, range);
+            return true;
+        }
+        VersionRange merged = VersionRange.intersect(requirements.get(name), range);
+        if (merged != null && merged.isEmpty()) {
+            return false;
+        }
+        requirements.put(name, merged);
+        return true;
+    }
+
+    @NotNull
+    public static List<Pair<String, VersionRange>> toRequirements(@NotNull Map<String, VersionRange> requirements) {
+        List<Pair<String, VersionRange>> result = new ArrayList<>(requirements.size());
+        for (Map.Entry<String, VersionRange> entry : requirements.entrySet()) {
+            result.add(new Pair<>(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
     /**
      *
      * @param bundleName bundle name
@@ -49,13 +84,13 @@ public class BundleUtils {
      */
     @NotNull
     public static Optional<RemoteP2BundleInfo> getMaxVersionRemoteBundle(@NotNull Pair<String, VersionRange> bundleName, P2BundleLookupCache cache) {
-        boolean max = !FileUtils.preferOlderBundles.contains(bundleName.toString());
-        Stream<RemoteP2BundleInfo> bundleStream = cache.getRemoteBundlesByName(bundleName.getFirst()).stream().filter(it -> VersionRange.isVersionsCompatible(bundleName.getSecond(), new Version(it.getBundleVersion())));
+        boolean max = !FileUtils.preferOlderBundles.contains(bundleName.getFirst());
+        Stream<RemoteP2BundleInfo> bundleStream = cache.getRemoteBundlesByName(bundleName.getFirst()).stream().filter(it -> VersionRange.isVersionsCompatible(bundleName.getSecond(), it.getVersion()));
         Optional<RemoteP2BundleInfo> remoteP2BundleInfo;
         if (max) {
-            remoteP2BundleInfo = bundleStream.max(Comparator.comparing(o -> new Version(o.getBundleVersion())));
+            remoteP2BundleInfo = bundleStream.max(Comparator.comparing(RemoteP2BundleInfo::getVersion));
         } else {
-            remoteP2BundleInfo = bundleStream.min(Comparator.comparing(o -> new Version(o.getBundleVersion())));
+            remoteP2BundleInfo = bundleStream.min(Comparator.comparing(RemoteP2BundleInfo::getVersion));
         }
         return remoteP2BundleInfo;
     }
@@ -66,20 +101,21 @@ public class BundleUtils {
         Stream<RemoteP2Feature> bundleStream = cache.getRemoteFeaturesByName(bundleName).stream();
         Optional<RemoteP2Feature> remoteP2BundleInfo;
         if (max) {
-            remoteP2BundleInfo = bundleStream.max(Comparator.comparing(o -> new Version(o.getVersion())));
+            remoteP2BundleInfo = bundleStream.max(Comparator.comparing(o -> Version.of(o.getVersion())));
         } else {
-            remoteP2BundleInfo = bundleStream.min(Comparator.comparing(o -> new Version(o.getVersion())));
+            remoteP2BundleInfo = bundleStream.min(Comparator.comparing(o -> Version.of(o.getVersion())));
         }
         return remoteP2BundleInfo;
     }
 
     public static boolean isRemoteBundleVersionGreater(RemoteP2BundleInfo maxVersionRemoteBundle, BundleInfo bundleInfo) {
-        int i = new Version(maxVersionRemoteBundle.getBundleVersion()).compareTo(new Version(bundleInfo.getBundleVersion()));
+        // Qualifier is ignored so local bundles are kept for the same release
+        int i = maxVersionRemoteBundle.getVersion().compareIgnoringQualifier(bundleInfo.getVersion());
         return i > 0;
     }
 
     public static boolean isRemoteFeatureVersionGreater(RemoteP2Feature maxVersionRemoteBundle, Version featureVersion) {
-        int i = new Version(maxVersionRemoteBundle.getVersion()).compareTo(featureVersion);
+        int i = Version.of(maxVersionRemoteBundle.getVersion()).compareIgnoringQualifier(featureVersion);
         return i > 0;
     }
 }
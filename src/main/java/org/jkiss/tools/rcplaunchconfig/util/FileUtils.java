@@ -23,19 +23,19 @@ import org.jkiss.code.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class FileUtils {
@@ -45,7 +45,7 @@ public class FileUtils {
     private static final String NAME_AND_VERSION_SEPARATOR = "_";
 
     private static final Object lockObject = new String();
-    private static final Map<File, File[]> folderContents = new HashMap<>();
+    private static final Map<File, FolderIndex> folderIndexes = new ConcurrentHashMap<>();
     public static final Set<String> preferOlderBundles = Set.of(
 //        "com.google.guava",
         "jakarta.servlet-api"
@@ -64,62 +64,37 @@ public class FileUtils {
 
     @Nullable
     public static File findFirstChildByPackageName(@Nonnull File folder, @Nonnull String packageName) {
-        File[] fileList = folderContents.get(folder);
-        if (fileList == null) {
-            fileList = folder.listFiles();
-            if (fileList == null) {
-                return null;
-            }
-            folderContents.put(folder, fileList);
-        }
-        List<File> files = new ArrayList<>();
-        for (File file : fileList) {
-            String name = file.getName();
-            var candidatePackageName = name;
-            int divPos = candidatePackageName.lastIndexOf(NAME_AND_VERSION_SEPARATOR);
-            if (divPos != -1 && Character.isDigit(candidatePackageName.charAt(divPos + 1))) {
-                candidatePackageName = StringUtils.substringBeforeLast(name, NAME_AND_VERSION_SEPARATOR);
-            }
-            if (packageName.equals(candidatePackageName)) {
-                files.add(file);
-            }
-        }
-        if (files.isEmpty()) {
+        FolderIndex folderIndex = getFolderIndex(folder);
+        if (folderIndex == null) {
             return null;
-        } else if (files.size() > 1) {
-            return getMaxVersion(files.toArray(new File[0]), packageName);
         }
-        return files.get(0);
+        return folderIndex.getPreferredFile(packageName);
     }
 
-    private static File getMaxVersion(@Nonnull File[] files, @Nonnull String packageName) {
-        var filesByVersions = Arrays.stream(files)
-            .collect(Collectors.toMap(FileUtils::extractVersion, it -> it));
+    /**
+     * Builds indexes of the folders in parallel, so later lookups don't need to scan folder contents
+     */
+    public static void indexFolders(@Nonnull Collection<Path> folders) {
+        folders.parallelStream()
+            .map(Path::toFile)
+            .distinct()
+            .forEach(FileUtils::getFolderIndex);
+    }
 
-        Version properVersion;
-        Stream<Version> bundleStream = filesByVersions.keySet().stream();
-        if (preferOlderBundles.contains(packageName)) {
-            properVersion = bundleStream.min(Version::compareTo).orElseThrow();
-        } else {
-            properVersion = bundleStream.max(Version::compareTo).orElseThrow();
-        }
-        var result = filesByVersions.get(properVersion);
-
-        var candidatesNamesList = Arrays.stream(files)
-            .map(File::getName)
-            .collect(Collectors.joining("\n  "));
-        log.debug(
-            "Multiple '{}' versions was found. '{}' will be used. Full candidates list:\n  {}",
-            packageName,
-            result.getName(),
-            candidatesNamesList
-        );
+    /**
+     * Drops folder index, it will be rebuilt on the next lookup
+     */
+    public static void invalidateFolderIndex(@Nonnull Path folder) {
+        folderIndexes.remove(folder.toFile());
+    }
 
-        return result;
+    @Nullable
+    private static FolderIndex getFolderIndex(@Nonnull File folder) {
+        return folderIndexes.computeIfAbsent(folder, FolderIndex::build);
     }
 
     public static @Nonnull Version extractVersion(@Nonnull File file) {
-        return new Version(StringUtils.substringAfterLast(file.getName(), NAME_AND_VERSION_SEPARATOR));
+        return Version.of(StringUtils.substringAfterLast(file.getName(), NAME_AND_VERSION_SEPARATOR));
     }
 
     public static @Nonnull Properties readPropertiesFile(@Nonnull Path path) throws IOException {
@@ -132,28 +107,71 @@ public class FileUtils {
 
     public static void writePropertiesFile(@Nonnull Path path, @Nonnull Map<String, String> properties)
         throws IOException {
-        try (var out = Files.newBufferedWriter(path, StandardOpenOption.CREATE_NEW)) {
-            storeProperties(out, "Generated by eclipse-plugins-resolver", properties);
+        writeIfChanged(path, formatProperties("Generated by eclipse-plugins-resolver", properties));
+    }
+
+    public static @Nonnull String formatProperties(@Nullable String comments, @Nonnull Map<String, String> properties) {
+        StringBuilder builder = new StringBuilder();
+        if (comments != null) {
+            builder.append("#").append(comments).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, String> e : properties.entrySet()) {
+            builder.append(e.getKey()).append("=").append(e.getValue()).append(System.lineSeparator());
         }
+        return builder.toString();
     }
 
-    public static void storeProperties(BufferedWriter bw, String comments, @Nonnull Map<String, String> properties) {
-        try {
-            if (comments != null) {
-                bw.write("#" + comments);
-            }
-            bw.write("#" + new Date());
-            bw.newLine();
-            for (Map.Entry<String, String> e : properties.entrySet()) {
-                String key = e.getKey();
-                String val = e.getValue();
-                bw.write(key + "=" + val);
-                bw.newLine();
-            }
-            bw.flush();
-        } catch (IOException e) {
-            System.err.println(e);
+    /**
+     * Writes the content only if it differs from the current file content, so unchanged files keep their timestamps
+     *
+     * @return true if the file was written
+     */
+    public static boolean writeIfChanged(@Nonnull Path path, @Nonnull String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(path) && Files.size(path) == bytes.length && Arrays.equals(Files.readAllBytes(path), bytes)) {
+            return false;
+        }
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(path, bytes);
+        return true;
+    }
+
+    /**
+     * Removes files and empty folders which are not in the list of actual files, the folder itself is kept
+     */
+    public static void removeStaleFiles(@Nonnull Path targetPath, @Nonnull Set<Path> actualFiles) throws IOException {
+        if (!Files.isDirectory(targetPath)) {
+            return;
         }
+        Files.walkFileTree(targetPath,
+            new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!actualFiles.contains(file)) {
+                        log.debug("Removing stale file '{}'", file);
+                        Files.delete(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    if (!targetPath.equals(dir)) {
+                        try (Stream<Path> children = Files.list(dir)) {
+                            if (children.findAny().isEmpty()) {
+                                Files.delete(dir);
+                            }
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
     }
 
     public static boolean exists(@Nonnull Path path) {
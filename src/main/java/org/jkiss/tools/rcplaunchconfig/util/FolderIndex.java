@@ -0,0 +1,113 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.util;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the folder with bundles or features.
+ * Maps symbolic name to all versions found in the folder, versions are sorted in ascending order.
+ */
+public class FolderIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderIndex.class);
+
+    private static final String NAME_AND_VERSION_SEPARATOR = "_";
+
+    private final File folder;
+    private final Map<String, File[]> filesByNames;
+
+    private FolderIndex(@Nonnull File folder, @Nonnull Map<String, File[]> filesByNames) {
+        this.folder = folder;
+        this.filesByNames = filesByNames;
+    }
+
+    @Nullable
+    public static FolderIndex build(@Nonnull File folder) {
+        File[] fileList = folder.listFiles();
+        if (fileList == null) {
+            return null;
+        }
+        Map<String, List<File>> groupedFiles = new HashMap<>(fileList.length * 2);
+        for (File file : fileList) {
+            groupedFiles.computeIfAbsent(extractName(file.getName()), it -> new ArrayList<>(1)).add(file);
+        }
+        Map<String, File[]> filesByNames = new HashMap<>(groupedFiles.size() * 2);
+        for (Map.Entry<String, List<File>> entry : groupedFiles.entrySet()) {
+            File[] files = entry.getValue().toArray(new File[0]);
+            if (files.length > 1) {
+                try {
+                    Arrays.sort(files, Comparator.comparing(FileUtils::extractVersion));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Cannot sort '{}' versions in '{}', folder order will be used", entry.getKey(), folder);
+                }
+            }
+            filesByNames.put(entry.getKey(), files);
+        }
+        return new FolderIndex(folder, filesByNames);
+    }
+
+    /**
+     * @return file with max version (or min version for bundles which prefer older versions), null if not found
+     */
+    @Nullable
+    public File getPreferredFile(@Nonnull String name) {
+        File[] files = filesByNames.get(name);
+        if (files == null) {
+            return null;
+        }
+        if (files.length == 1) {
+            return files[0];
+        }
+        File result = FileUtils.preferOlderBundles.contains(name) ? files[0] : files[files.length - 1];
+        if (log.isDebugEnabled()) {
+            var candidatesNamesList = Arrays.stream(files)
+                .map(File::getName)
+                .collect(Collectors.joining("\n  "));
+            log.debug(
+                "Multiple '{}' versions was found in '{}'. '{}' will be used. Full candidates list:\n  {}",
+                name,
+                folder,
+                result.getName(),
+                candidatesNamesList
+            );
+        }
+        return result;
+    }
+
+    @Nonnull
+    public List<File> getFiles(@Nonnull String name) {
+        File[] files = filesByNames.get(name);
+        return files == null ? List.of() : List.of(files);
+    }
+
+    @Nonnull
+    public static String extractName(@Nonnull String fileName) {
+        int divPos = fileName.lastIndexOf(NAME_AND_VERSION_SEPARATOR);
+        if (divPos != -1 && divPos + 1 < fileName.length() && Character.isDigit(fileName.charAt(divPos + 1))) {
+            return fileName.substring(0, divPos);
+        }
+        return fileName;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.util;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classifies bundle and package names by the longest matching pattern.
+ * Patterns are compiled into a character trie, so a name is classified in a single pass over its characters.
+ * Pattern ending with '*' matches all names starting with the prefix, other patterns match the whole name only.
+ * Number of classified names is counted for every class.
+ */
+public final class PrefixClassifier<T extends Enum<T>> {
+
+    private static final int NO_VALUE = -1;
+    private static final String PATTERNS_SEPARATOR = ";";
+    private static final String PREFIX_WILDCARD = "*";
+    private static final String NEGATION = "!";
+
+    // edges of the node i are stored at [edgeOffsets[i], edgeOffsets[i + 1]) sorted by character
+    private final int[] edgeOffsets;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    // ordinals of the classes, NO_VALUE if node does not end a pattern
+    private final int[] prefixValues;
+    private final int[] exactValues;
+    private final T[] values;
+    private final T defaultValue;
+    private final LongAdder[] hits;
+
+    private PrefixClassifier(
+        @Nonnull int[] edgeOffsets,
+        @Nonnull char[] edgeChars,
+        @Nonnull int[] edgeTargets,
+        @Nonnull int[] prefixValues,
+        @Nonnull int[] exactValues,
+        @Nonnull T[] values,
+        @Nonnull T defaultValue
+    ) {
+        this.edgeOffsets = edgeOffsets;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.prefixValues = prefixValues;
+        this.exactValues = exactValues;
+        this.values = values;
+        this.defaultValue = defaultValue;
+        this.hits = new LongAdder[values.length];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = new LongAdder();
+        }
+    }
+
+    @Nonnull
+    public static <T extends Enum<T>> Builder<T> builder(@Nonnull T defaultValue) {
+        return new Builder<>(defaultValue);
+    }
+
+    /**
+     * @return class of the longest matching pattern, or the default class
+     */
+    @Nonnull
+    public T classify(@Nonnull String name) {
+        int node = 0;
+        int value = prefixValues[0];
+        for (int i = 0, length = name.length(); i < length && node != NO_VALUE; i++) {
+            node = findChild(node, name.charAt(i));
+            if (node != NO_VALUE && prefixValues[node] != NO_VALUE) {
+                value = prefixValues[node];
+            }
+        }
+        if (node != NO_VALUE && exactValues[node] != NO_VALUE) {
+            value = exactValues[node];
+        }
+        T result = value == NO_VALUE ? defaultValue : values[value];
+        hits[result.ordinal()].increment();
+        return result;
+    }
+
+    /**
+     * @return number of classified names by class
+     */
+    @Nonnull
+    public Map<T, Long> getHits() {
+        Map<T, Long> result = new EnumMap<>(defaultValue.getDeclaringClass());
+        for (T value : values) {
+            result.put(value, hits[value.ordinal()].sum());
+        }
+        return result;
+    }
+
+    private int findChild(int node, char c) {
+        int index = Arrays.binarySearch(edgeChars, edgeOffsets[node], edgeOffsets[node + 1], c);
+        return index < 0 ? NO_VALUE : edgeTargets[index];
+    }
+
+    public static final class Builder<T extends Enum<T>> {
+        private final T defaultValue;
+        private final BuilderNode<T> root = new BuilderNode<>();
+
+        private Builder(@Nonnull T defaultValue) {
+            this.defaultValue = defaultValue;
+        }
+
+        @Nonnull
+        public Builder<T> add(@Nonnull String pattern, @Nonnull T value) {
+            boolean prefix = pattern.endsWith(PREFIX_WILDCARD);
+            String name = prefix ? pattern.substring(0, pattern.length() - PREFIX_WILDCARD.length()) : pattern;
+            BuilderNode<T> node = root;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.children.computeIfAbsent(name.charAt(i), it -> new BuilderNode<>());
+            }
+            if (prefix) {
+                node.prefixValue = value;
+            } else {
+                node.exactValue = value;
+            }
+            return this;
+        }
+
+        /**
+         * Adds patterns separated by ';', patterns starting with '!' get the negated class
+         */
+        @Nonnull
+        public Builder<T> addAll(@Nonnull String patterns, @Nonnull T value, @Nonnull T negatedValue) {
+            for (String pattern : patterns.split(PATTERNS_SEPARATOR)) {
+                pattern = pattern.trim();
+                if (pattern.startsWith(NEGATION)) {
+                    add(pattern.substring(NEGATION.length()).trim(), negatedValue);
+                } else if (!pattern.isEmpty()) {
+                    add(pattern, value);
+                }
+            }
+            return this;
+        }
+
+        @Nonnull
+        public PrefixClassifier<T> build() {
+            // breadth-first numbering, children of a node get consecutive edges
+            List<BuilderNode<T>> nodes = new ArrayList<>();
+            nodes.add(root);
+            int edgesCount = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                nodes.addAll(nodes.get(i).children.values());
+                edgesCount += nodes.get(i).children.size();
+            }
+            Map<BuilderNode<T>, Integer> indexes = new IdentityHashMap<>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                indexes.put(nodes.get(i), i);
+            }
+            int[] edgeOffsets = new int[nodes.size() + 1];
+            char[] edgeChars = new char[edgesCount];
+            int[] edgeTargets = new int[edgesCount];
+            int[] prefixValues = new int[nodes.size()];
+            int[] exactValues = new int[nodes.size()];
+            int edge = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                BuilderNode<T> node = nodes.get(i);
+                edgeOffsets[i] = edge;
+                for (Map.Entry<Character, BuilderNode<T>> child : node.children.entrySet()) {
+                    edgeChars[edge] = child.getKey();
+                    edgeTargets[edge] = indexes.get(child.getValue());
+                    edge++;
+                }
+                prefixValues[i] = node.prefixValue == null ? NO_VALUE : node.prefixValue.ordinal();
+                exactValues[i] = node.exactValue == null ? NO_VALUE : node.exactValue.ordinal();
+            }
+            edgeOffsets[nodes.size()] = edge;
+            return new PrefixClassifier<>(
+                edgeOffsets,
+                edgeChars,
+                edgeTargets,
+                prefixValues,
+                exactValues,
+                defaultValue.getDeclaringClass().getEnumConstants(),
+                defaultValue
+            );
+        }
+    }
+
+    private static final class BuilderNode<T> {
+        private final SortedMap<Character, BuilderNode<T>> children = new TreeMap<>();
+        private T prefixValue;
+        private T exactValue;
+    }
+}
@@ -16,13 +16,35 @@
  */
 package org.jkiss.tools.rcplaunchconfig.util;
 
-public class Version implements Comparable<Version> {
-    int major;
-    int minor;
-    int micro;
-    String delta;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 
-    public Version(String str) {
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable OSGi version (major.minor.micro.qualifier).
+ * Instances are interned by their source string, use {@link #of(String)} to obtain them.
+ */
+public final class Version implements Comparable<Version> {
+
+    private static final Map<String, Version> pool = new ConcurrentHashMap<>();
+
+    private final int major;
+    private final int minor;
+    private final int micro;
+    @Nullable
+    private final String qualifier;
+    // major and minor packed into a single key
+    private final long numericKey;
+    // micro in the high half, first qualifier chars in the low half, see packQualifier
+    private final long microKey;
+    private final int hashCode;
+
+    private Version(@Nonnull String str) {
+        int major = 0, minor = 0, micro = 0;
+        String qualifier = null;
         int divPos1 = str.indexOf('.');
         if (divPos1 == -1) {
             major = Integer.parseInt(str);
@@ -38,26 +60,122 @@ public class Version implements Comparable<Version> {
                     micro = Integer.parseInt(str.substring(divPos2 + 1));
                 } else {
                     micro = Integer.parseInt(str.substring(divPos2 + 1, divPos3));
-                    delta = str.substring(divPos3 + 1);
+                    qualifier = str.substring(divPos3 + 1);
+                    if (qualifier.isEmpty()) {
+                        qualifier = null;
+                    }
                 }
             }
         }
+        this.major = major;
+        this.minor = minor;
+        this.micro = micro;
+        this.qualifier = qualifier;
+        this.numericKey = ((long) major << 32) | (minor & 0xFFFFFFFFL);
+        this.microKey = ((long) micro << 32) | packQualifier(qualifier);
+        this.hashCode = 31 * (31 * Long.hashCode(numericKey) + micro) + (qualifier == null ? 0 : qualifier.hashCode());
+    }
+
+    /**
+     * Packs first four qualifier chars into the unsigned int, packing stops at the first non-latin char.
+     * Order of packed values never contradicts the order of qualifiers, equal values require the full comparison.
+     */
+    private static long packQualifier(@Nullable String qualifier) {
+        long packed = 0;
+        boolean truncated = qualifier == null;
+        for (int i = 0; i < 4; i++) {
+            int c = 0;
+            if (!truncated && i < qualifier.length()) {
+                c = Math.min(qualifier.charAt(i), 0xFF);
+                truncated = c == 0xFF;
+            }
+            packed = (packed << 8) | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Returns canonical version instance for the specified string.
+     *
+     * @throws NumberFormatException if version components are not numeric
+     */
+    @Nonnull
+    public static Version of(@Nonnull String str) {
+        Version version = pool.get(str);
+        if (version == null) {
+            version = pool.computeIfAbsent(str, Version::new);
+        }
+        return version;
+    }
+
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
+    }
+
+    public int getMicro() {
+        return micro;
+    }
+
+    @Nullable
+    public String getQualifier() {
+        return qualifier;
     }
 
     @Override
     public String toString() {
-        return major + "." + minor + "." + micro + (delta == null ? "" : "." + delta);
+        return major + "." + minor + "." + micro + (qualifier == null ? "" : "." + qualifier);
+    }
+
+    @Override
+    public int compareTo(@Nonnull Version o) {
+        if (this == o) {
+            return 0;
+        }
+        int dif = Long.compare(numericKey, o.numericKey);
+        if (dif != 0) {
+            return dif;
+        }
+        dif = Long.compare(microKey, o.microKey);
+        if (dif != 0) {
+            return dif;
+        }
+        // Empty qualifier is the lowest one, as in OSGi
+        if (qualifier == null) {
+            return o.qualifier == null ? 0 : -1;
+        }
+        return o.qualifier == null ? 1 : qualifier.compareTo(o.qualifier);
+    }
+
+    /**
+     * Compares numeric components only.
+     * Used when local bundles must win over remote ones of the same release,
+     * e.g. workspace bundles with literal {@code qualifier}.
+     */
+    public int compareIgnoringQualifier(@Nonnull Version o) {
+        int dif = Long.compare(numericKey, o.numericKey);
+        return dif != 0 ? dif : Long.compare(microKey >>> 32, o.microKey >>> 32);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Version that)) {
+            return false;
+        }
+        return hashCode == that.hashCode &&
+            numericKey == that.numericKey &&
+            microKey == that.microKey &&
+            Objects.equals(qualifier, that.qualifier);
     }
 
     @Override
-    public int compareTo(Version o) {
-        int dif = major - o.major;
-        if (dif != 0) return dif;
-        dif = minor - o.minor;
-        if (dif != 0) return dif;
-        dif = micro - o.micro;
-        if (dif != 0) return dif;
-        // Delta?
-        return 0;
+    public int hashCode() {
+        return hashCode;
     }
 }
@@ -16,10 +16,21 @@
  */
 package org.jkiss.tools.rcplaunchconfig.util;
 
+import org.jkiss.code.NotNull;
 import org.jkiss.code.Nullable;
 import org.jkiss.utils.Pair;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OSGi version range. Parsed ranges are cached by their text, thus instances must not be modified.
+ */
 public class VersionRange extends Pair<Version, Version> {
+
+    private static final Map<String, VersionRange> cache = new ConcurrentHashMap<>();
+
     private final boolean includingFirst;
     private final boolean includingSecond;
 
@@ -28,40 +39,118 @@ public class VersionRange extends Pair<Version, Version> {
         this.includingFirst = includingFirst;
         this.includingSecond = includingSecond;
     }
+
     @Nullable
     public static VersionRange fromString(String range) {
         if (range == null || "0.0.0".equals(range)) {
             return null;
         }
+        VersionRange versionRange = cache.get(range);
+        if (versionRange == null) {
+            versionRange = cache.computeIfAbsent(range, VersionRange::parse);
+        }
+        return versionRange;
+    }
+
+    @NotNull
+    private static VersionRange parse(@NotNull String range) {
         if (range.contains("(") || range.contains("[")) {
             boolean includingFirst = range.startsWith("[");
             boolean includingSecond = range.endsWith("]");
-            String[] versions = range.substring(1, range.length() - 1).split(",");
+            String[] versions = range.substring(1, range.length() - 1).split(",", -1);
             Version first = null, second = null;
             if (!versions[0].trim().isEmpty()) {
-                first = new Version(versions[0].trim());
+                first = Version.of(versions[0].trim());
             }
             if (!versions[1].trim().isEmpty()) {
-                second = new Version(versions[1].trim());
+                second = Version.of(versions[1].trim());
             }
             return new VersionRange(first, second, includingFirst, includingSecond);
         } else {
-            Version version = new Version(range);
+            Version version = Version.of(range);
             return new VersionRange(version, null, true, true);
         }
     }
 
-    public boolean versionIsSuitable(Version version) {
-        boolean isValid = true;
-        if (getFirst() != null) {
-            int comparisonWithFirst = version.compareTo(getFirst());
-            isValid &= comparisonWithFirst > 0 | (includingFirst && comparisonWithFirst == 0);
+    public boolean isIncludingFirst() {
+        return includingFirst;
+    }
+
+    public boolean isIncludingSecond() {
+        return includingSecond;
+    }
+
+    public boolean versionIsSuitable(@NotNull Version version) {
+        Version first = getFirst();
+        if (first != null) {
+            int comparisonWithFirst = version.compareTo(first);
+            if (comparisonWithFirst < 0 || (comparisonWithFirst == 0 && !includingFirst)) {
+                return false;
+            }
         }
-        if (getSecond() != null) {
-            int comparisonWithSecond = version.compareTo(getSecond());
-            isValid &= comparisonWithSecond < 0 | (includingSecond && comparisonWithSecond == 0);
+        Version second = getSecond();
+        if (second != null) {
+            int comparisonWithSecond = version.compareTo(second);
+            return comparisonWithSecond < 0 || (comparisonWithSecond == 0 && includingSecond);
         }
-        return isValid;
+        return true;
+    }
+
+    /**
+     * Checks whether no version satisfies this range, e.g. {@code [2.0.0,1.0.0]} or {@code (1.0.0,1.0.0]}
+     */
+    public boolean isEmpty() {
+        Version first = getFirst();
+        Version second = getSecond();
+        if (first == null || second == null) {
+            return false;
+        }
+        int comparison = first.compareTo(second);
+        return comparison > 0 || (comparison == 0 && !(includingFirst && includingSecond));
+    }
+
+    /**
+     * Returns range which satisfies both constraints. Result may be {@link #isEmpty() empty}.
+     */
+    @NotNull
+    public VersionRange intersect(@NotNull VersionRange other) {
+        Version first = getFirst();
+        boolean inclFirst = includingFirst;
+        if (other.getFirst() != null) {
+            int comparison = first == null ? -1 : first.compareTo(other.getFirst());
+            if (comparison < 0) {
+                first = other.getFirst();
+                inclFirst = other.includingFirst;
+            } else if (comparison == 0) {
+                inclFirst &= other.includingFirst;
+            }
+        }
+        Version second = getSecond();
+        boolean inclSecond = includingSecond;
+        if (other.getSecond() != null) {
+            int comparison = second == null ? 1 : second.compareTo(other.getSecond());
+            if (comparison > 0) {
+                second = other.getSecond();
+                inclSecond = other.includingSecond;
+            } else if (comparison == 0) {
+                inclSecond &= other.includingSecond;
+            }
+        }
+        if (first == getFirst() && second == getSecond() && inclFirst == includingFirst && inclSecond == includingSecond) {
+            return this;
+        }
+        return new VersionRange(first, second, inclFirst, inclSecond);
+    }
+
+    /**
+     * Intersects two optional constraints, {@code null} stands for any version
+     */
+    @Nullable
+    public static VersionRange intersect(@Nullable VersionRange first, @Nullable VersionRange second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null ? first : first.intersect(second);
     }
 
     public static boolean isVersionsCompatible(VersionRange versionRange, Version version) {
@@ -71,4 +160,34 @@ public class VersionRange extends Pair<Version, Version> {
             return true;
         }
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VersionRange that)) {
+            return false;
+        }
+        return includingFirst == that.includingFirst &&
+            includingSecond == that.includingSecond &&
+            Objects.equals(getFirst(), that.getFirst()) &&
+            Objects.equals(getSecond(), that.getSecond());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getFirst(), getSecond(), includingFirst, includingSecond);
+    }
+
+    @Override
+    public String toString() {
+        if (getSecond() == null && includingFirst && includingSecond) {
+            return String.valueOf(getFirst());
+        }
+        return (includingFirst ? "[" : "(") +
+            (getFirst() == null ? "" : getFirst()) + "," +
+            (getSecond() == null ? "" : getSecond()) +
+            (includingSecond ? "]" : ")");
+    }
 }
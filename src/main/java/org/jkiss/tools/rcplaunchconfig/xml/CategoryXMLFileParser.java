@@ -16,52 +16,52 @@
  */
 package org.jkiss.tools.rcplaunchconfig.xml;
 
-import org.jkiss.tools.rcplaunchconfig.Result;
-import org.jkiss.tools.rcplaunchconfig.resolvers.FeatureResolver;
+import jakarta.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class CategoryXMLFileParser {
     private static final Logger log = LoggerFactory.getLogger(CategoryXMLFileParser.class);
 
-    public static void parseCategoryXML(Result result, Path path) {
-        try {
-            // Initialize the XML document
-            var factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(path.toFile());
+    public static final String CATEGORY_XML_FILENAME = "category.xml";
 
-            // Normalize the XML structure
-            doc.getDocumentElement().normalize();
-            Set<String> features = new HashSet<>();
-            // Get all the 'feature' elements
-            NodeList featureList = doc.getElementsByTagName("feature");
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
 
-            // Iterate through the features and print their ids
-            for (int i = 0; i < featureList.getLength(); i++) {
-                Node featureNode = featureList.item(i);
-
-                if (featureNode.getNodeType() == Node.ELEMENT_NODE) {
-                    Element featureElement = (Element) featureNode;
-                    String id = featureElement.getAttribute("id");
-                    FeatureResolver.resolveFeatureDependencies(result, id);
+    /**
+     * Reads ids of all features listed in the category file, in the document order
+     */
+    @Nonnull
+    public static List<String> readFeatureIds(@Nonnull Path path) {
+        List<String> featureIds = new ArrayList<>();
+        try (var inputStream = Files.newInputStream(path);
+             var bufferedInput = new BufferedInputStream(inputStream)
+        ) {
+            var reader = XML_INPUT_FACTORY.createXMLStreamReader(bufferedInput);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "feature".equals(reader.getLocalName())) {
+                        String id = reader.getAttributeValue(null, XmlReaderExtension.ID_ATTR_NAME);
+                        if (id != null) {
+                            featureIds.add(id);
+                        }
+                    }
                 }
+            } finally {
+                reader.close();
             }
-
-        } catch (Exception e) {
-            log.error("Error during parsing category xml file" + e);
+        } catch (IOException | XMLStreamException e) {
+            log.error("Error during parsing category xml file " + path, e);
         }
+        return featureIds;
     }
 }
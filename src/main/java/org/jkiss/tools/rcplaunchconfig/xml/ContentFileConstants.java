@@ -16,15 +16,13 @@
  */
 package org.jkiss.tools.rcplaunchconfig.xml;
 
-import java.util.regex.Pattern;
-
 public class ContentFileConstants {
     public static final String ARCH_FILTER = "osgi.arch";
 
     public static final String WS_FILTER = "osgi.ws";
     public static final String OS_FILTER = "osgi.os";
 
-    public static final Pattern START_LEVEL_PATTERN = Pattern.compile(".*startLevel:\\s*(-?\\d+).*");
+    public static final String START_LEVEL_KEY = "startLevel:";
     public static final String REQUIRED_PROPERTIES_KEYWORD = "requiredProperties";
     public static final String INSTRUCTION_KEYWORD = "instruction";
     public static final String PROVIDED_KEYWORD = "provided";
@@ -17,27 +17,24 @@
 package org.jkiss.tools.rcplaunchconfig.xml;
 
 import org.jkiss.code.NotNull;
+import org.jkiss.tools.rcplaunchconfig.Artifact;
 import org.jkiss.tools.rcplaunchconfig.BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.p2.P2BundleLookupCache;
 import org.jkiss.tools.rcplaunchconfig.p2.RemoteP2Feature;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2BundleInfo;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.RemoteP2Repository;
-import org.jkiss.tools.rcplaunchconfig.util.DependencyInformation;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
 import org.jkiss.tools.rcplaunchconfig.util.VersionRange;
-import org.jkiss.utils.CommonUtils;
-import org.jkiss.utils.Pair;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
-import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -45,11 +42,17 @@ import javax.xml.parsers.SAXParserFactory;
 
 public class ContentFileHandler extends DefaultHandler {
 
+    private static final int NO_START_LEVEL = Integer.MIN_VALUE;
 
     private final RemoteP2Repository repository;
     private final P2BundleLookupCache cache;
     private RemoteP2BundleInfo.RemoteBundleInfoBuilder currentBundle;
-    private Pair<DependencyInformation, DependencyType> currentDependency;
+
+    // requirement or capability being read, version and range are parsed only when it is stored
+    private DependencyType dependencyType;
+    private String dependencyName;
+    private String dependencyVersion;
+    private String dependencyRange;
 
     private ParserState currentState = ParserState.ROOT;
     private ContentType currentContentType = null;
@@ -59,6 +62,11 @@ public class ContentFileHandler extends DefaultHandler {
     private UnitInformation currentUnit;
     private String artifactID;
 
+    // text of the current instruction or filter element, reused between elements
+    private char[] text = new char[256];
+    private int textLength;
+    private final FilterEvaluator filterEvaluator = new FilterEvaluator();
+
     public static void indexContent(
             @NotNull RemoteP2Repository repository,
             @NotNull File contentFile,
@@ -73,100 +81,94 @@ public class ContentFileHandler extends DefaultHandler {
         repository.addRemoteFeatures(contentFileHandler.remoteP2Features);
     }
 
-
-    @Override
-    public void startDocument() throws SAXException {
-        super.startDocument();
-    }
-
-    @Override
-    public void endDocument() throws SAXException {
-        super.endDocument();
-    }
-
     @Override
     public void startElement(String uri, String localName, String qualifiedName, Attributes attributes) throws SAXException {
-         if (ContentFileConstants.UNIT_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            currentState = ParserState.PLUGIN_VALID;
-            String id = attributes.getValue(ContentFileConstants.ID_FIELD);
-            String version = attributes.getValue(ContentFileConstants.VERSION_FIELD);
-            this.currentUnit = new UnitInformation(id, version);
-        }
-        if (currentState.isInsideUnit() && ContentFileConstants.PROPERTY_KEYWORD.equalsIgnoreCase(qualifiedName)
-            && "maven-artifactId".equalsIgnoreCase(attributes.getValue(ContentFileConstants.NAME_FIELD))) {
-            artifactID = attributes.getValue(ContentFileConstants.FIELD_VALUE);
-        }
-        if (
-            currentState.equals(ParserState.PLUGIN_VALID) && ContentFileConstants.PROPERTY_KEYWORD.equalsIgnoreCase(qualifiedName)
-        ) {
-            if (ContentFileConstants.MAVEN_TYPE_FIELD.equalsIgnoreCase(attributes.getValue(ContentFileConstants.NAME_FIELD))) {
-                switch (attributes.getValue(ContentFileConstants.FIELD_VALUE).toLowerCase()) {
-                    case "eclipse-feature" ->
-                        currentState = ParserState.FEATURE_VALID;
-                    case "jar", "eclipse-plugin" -> {
-                        currentState = ParserState.PLUGIN_VALID;
-                        initBundle(false);
-                    }
-                    case "java-source" -> {
-                        currentState = ParserState.SOURCES_VALID;
-                        initBundle(true);
-                    }
-                    default -> {
-                        // do nothing
+        ContentElement element = ContentElement.of(qualifiedName);
+        switch (element) {
+            case UNIT -> {
+                currentState = ParserState.PLUGIN_VALID;
+                String id = attributes.getValue(ContentFileConstants.ID_FIELD);
+                String version = attributes.getValue(ContentFileConstants.VERSION_FIELD);
+                this.currentUnit = new UnitInformation(id, version);
+            }
+            case PROPERTY -> {
+                if (currentState.isInsideUnit()) {
+                    readUnitProperty(attributes);
+                }
+            }
+            case REQUIRED, PROVIDED -> {
+                if (currentState.isPluginOrComment()) {
+                    startDependency(element, attributes);
+                }
+            }
+            case INSTRUCTION -> {
+                if (!currentState.isInvalid() && currentState.isInsideUnit()) {
+                    String key = attributes.getValue(ContentFileConstants.KEY_FIELD);
+                    if ("configure".equalsIgnoreCase(key)) {
+                        startText(ContentType.INSTRUCTION);
+                    } else if (currentState.isPluginOrComment() && "zipped".equals(key)) {
+                        if (currentBundle == null) {
+                            initBundle(false);
+                        }
+                        currentBundle.setZipped(true);
                     }
                 }
-            } else if (ContentFileConstants.MAVEN_P2TYPE_CATEGORY.equalsIgnoreCase(attributes.getValue(ContentFileConstants.NAME_FIELD))) {
-                if ("true".equalsIgnoreCase(attributes.getValue(ContentFileConstants.FIELD_VALUE))) {
-                    currentState = ParserState.UNIT_INVALID;
+            }
+            case FILTER -> {
+                if (!currentState.isInvalid() && (currentState.isInsideUnit() || currentState.isInsideDependency())) {
+                    startText(ContentType.FILTER);
                 }
             }
+            default -> {
+                // not interesting
+            }
         }
-        if (
-            currentState.isPluginOrComment()
-                && (ContentFileConstants.REQUIRED_KEYWORD.equalsIgnoreCase(qualifiedName)
-                || ContentFileConstants.PROVIDED_KEYWORD.equalsIgnoreCase(qualifiedName))
-        ) {
-            if (
-                ContentFileConstants.REQUIRED_KEYWORD.equalsIgnoreCase(qualifiedName)
-                    && "true".equalsIgnoreCase(attributes.getValue("optional"))
-            ) {
-                currentState = ParserState.DEPENDENCY_INVALID;
-                return;
-            }
-            String name = attributes.getValue(ContentFileConstants.NAME_FIELD);
-            String namespace = attributes.getValue(ContentFileConstants.NAMESPACE_FIELD);
-            String depVersion = attributes.getValue(ContentFileConstants.VERSION_FIELD);
-            String depRange = attributes.getValue(ContentFileConstants.RANGE_FIELD);
-            DependencyType type = DependencyType.getType(namespace);
-            currentState = ParserState.DEPENDENCY;
-            if (currentBundle == null) {
-                initBundle(false);
-            }
-            currentDependency = new Pair<>(new DependencyInformation(
-                name,
-                depVersion != null ? new Version(depVersion) : null,
-                depRange != null ? VersionRange.fromString(depRange) : null
-                ), type);
+    }
+
+    private void readUnitProperty(Attributes attributes) {
+        String name = attributes.getValue(ContentFileConstants.NAME_FIELD);
+        if ("maven-artifactId".equalsIgnoreCase(name)) {
+            artifactID = attributes.getValue(ContentFileConstants.FIELD_VALUE);
         }
-        if (!currentState.isInvalid()
-            && currentState.isInsideUnit()
-            && ContentFileConstants.INSTRUCTION_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            if ("configure".equalsIgnoreCase(attributes.getValue(ContentFileConstants.KEY_FIELD))) {
-                currentContentType = ContentType.INSTRUCTION;
-            } else if (currentState.isPluginOrComment()
-                && "zipped".equals(attributes.getValue(ContentFileConstants.KEY_FIELD))) {
-                currentBundle.setZipped(true);
-            }
+        if (currentState != ParserState.PLUGIN_VALID) {
+            return;
         }
-        if (
-            !currentState.isInvalid()
-                && (currentState.isInsideUnit() || currentState.isInsideDependency())
-                && ContentFileConstants.FILTER_KEYWORD.equalsIgnoreCase(qualifiedName)
-        ) {
-            currentContentType = ContentType.FILTER;
+        if (ContentFileConstants.MAVEN_TYPE_FIELD.equalsIgnoreCase(name)) {
+            switch (attributes.getValue(ContentFileConstants.FIELD_VALUE).toLowerCase(Locale.ROOT)) {
+                case "eclipse-feature" ->
+                    currentState = ParserState.FEATURE_VALID;
+                case "jar", "eclipse-plugin" -> {
+                    currentState = ParserState.PLUGIN_VALID;
+                    initBundle(false);
+                }
+                case "java-source" -> {
+                    currentState = ParserState.SOURCES_VALID;
+                    initBundle(true);
+                }
+                default -> {
+                    // do nothing
+                }
+            }
+        } else if (ContentFileConstants.MAVEN_P2TYPE_CATEGORY.equalsIgnoreCase(name)) {
+            if ("true".equalsIgnoreCase(attributes.getValue(ContentFileConstants.FIELD_VALUE))) {
+                currentState = ParserState.UNIT_INVALID;
+            }
         }
+    }
 
-        super.startElement(uri, localName, qualifiedName, attributes);
+    private void startDependency(ContentElement element, Attributes attributes) {
+        if (element == ContentElement.REQUIRED && "true".equalsIgnoreCase(attributes.getValue("optional"))) {
+            currentState = ParserState.DEPENDENCY_INVALID;
+            return;
+        }
+        currentState = ParserState.DEPENDENCY;
+        if (currentBundle == null) {
+            initBundle(false);
+        }
+        dependencyType = DependencyType.getType(attributes.getValue(ContentFileConstants.NAMESPACE_FIELD));
+        dependencyName = attributes.getValue(ContentFileConstants.NAME_FIELD);
+        dependencyVersion = attributes.getValue(ContentFileConstants.VERSION_FIELD);
+        dependencyRange = attributes.getValue(ContentFileConstants.RANGE_FIELD);
     }
 
     private void initBundle(boolean sourceBundle) {
@@ -177,101 +179,161 @@ public class ContentFileHandler extends DefaultHandler {
 
     @Override
     public void endElement(String uri, String localName, String qualifiedName) throws SAXException {
-        if (currentState.isInsideUnit() && ContentFileConstants.UNIT_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            if (currentState != ParserState.UNIT_INVALID) {
-                if (currentState.isPluginOrComment()) {
-                    if (currentBundle == null) {
-                        initBundle(false);
+        switch (ContentElement.of(qualifiedName)) {
+            case UNIT -> {
+                if (currentState.isInsideUnit()) {
+                    endUnit();
+                }
+            }
+            case REQUIRED -> {
+                if (currentState.isInsideDependency()) {
+                    if (currentState != ParserState.DEPENDENCY_INVALID) {
+                        if (dependencyType == DependencyType.BUNDLE) {
+                            currentBundle.addToRequiredBundles(dependencyName, VersionRange.fromString(dependencyRange));
+                        } else if (dependencyType == DependencyType.PACKAGE) {
+                            currentBundle.addToRequiredPackages(dependencyName, VersionRange.fromString(dependencyRange));
+                        }
                     }
-                    RemoteP2BundleInfo bundle = currentBundle.build();
-                    if (repository.isIndexed(bundle.getBundleName(), bundle.getBundleVersion())) {
-                        cache.addRemoteBundle(bundle);
-                        remoteP2BundleInfos.add(bundle);
+                    endDependency();
+                }
+            }
+            case PROVIDED -> {
+                if (currentState.isInsideDependency()) {
+                    if (currentState != ParserState.DEPENDENCY_INVALID && dependencyType == DependencyType.PACKAGE) {
+                        currentBundle.addToExportPackage(
+                            dependencyName,
+                            dependencyVersion != null ? Version.of(dependencyVersion) : null
+                        );
                     }
+                    endDependency();
                 }
-                if (currentState == ParserState.FEATURE_VALID) {
-                    RemoteP2Feature remoteP2Feature = new RemoteP2Feature(artifactID, currentUnit.version(), repository);
-                    if (repository.isIndexed(artifactID, currentUnit.version())) {
-                        cache.addRemoteFeature(remoteP2Feature);
-                        remoteP2Features.add(remoteP2Feature);
+            }
+            case REQUIRED_PROPERTIES -> {
+                if (currentState.isInsideDependency()) {
+                    if (currentState != ParserState.DEPENDENCY_INVALID) {
+                        currentBundle.addToRequiredPackages(dependencyName, VersionRange.fromString(dependencyRange));
                     }
+                    endDependency();
                 }
             }
-            currentBundle = null;
-            currentUnit = null;
-            artifactID = null;
-            currentState = ParserState.ROOT;
-        }
-        if (currentState.isInsideDependency() && ContentFileConstants.REQUIRED_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            if (currentState != ParserState.DEPENDENCY_INVALID) {
-                if (currentDependency.getSecond().equals(DependencyType.BUNDLE)) {
-                    currentBundle.addToRequiredBundles(currentDependency.getFirst().name(), currentDependency.getFirst().range());
-                } else if (currentDependency.getSecond().equals(DependencyType.PACKAGE)) {
-                    currentBundle.addToRequiredPackages(currentDependency.getFirst().name(), currentDependency.getFirst().range());
+            case INSTRUCTION -> {
+                if (currentState.isInsideUnit() && currentContentType == ContentType.INSTRUCTION) {
+                    if (!currentState.isInvalid()) {
+                        int startLevel = findStartLevel(text, textLength);
+                        if (startLevel != NO_START_LEVEL && currentBundle != null) {
+                            currentBundle.setStartLevel(startLevel);
+                        }
+                    }
+                    currentContentType = null;
                 }
             }
-            currentDependency = null;
-            currentState = ParserState.PLUGIN_VALID;
+            case FILTER -> {
+                if ((currentState.isInsideUnit() || currentState.isInsideDependency())
+                    && currentContentType == ContentType.FILTER) {
+                    if (!filterEvaluator.evaluate(text, textLength)) {
+                        currentState = currentState.isInsideDependency() ? ParserState.DEPENDENCY_INVALID : ParserState.UNIT_INVALID;
+                    }
+                    currentContentType = null;
+                }
+            }
+            default -> {
+                // not interesting
+            }
         }
+    }
 
-        if (currentState.isInsideDependency() && ContentFileConstants.PROVIDED_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            if (currentState != ParserState.DEPENDENCY_INVALID) {
-                if (
-                    currentDependency.getSecond().equals(DependencyType.PACKAGE)
-                ) {
-                    currentBundle.addToExportPackage(currentDependency.getFirst().name(), currentDependency.getFirst().version());
+    private void endUnit() {
+        if (currentState != ParserState.UNIT_INVALID) {
+            if (currentState.isPluginOrComment()) {
+                if (currentBundle == null) {
+                    initBundle(false);
+                }
+                RemoteP2BundleInfo bundle = currentBundle.build();
+                if (repository.isIndexed(Artifact.BUNDLE_CLASSIFIER, bundle.getBundleName(), bundle.getBundleVersion())) {
+                    cache.addRemoteBundle(bundle);
+                    remoteP2BundleInfos.add(bundle);
                 }
             }
-            currentDependency = null;
-            currentState = ParserState.PLUGIN_VALID;
-        }
-        if (currentState.isInsideDependency()
-            && ContentFileConstants.REQUIRED_PROPERTIES_KEYWORD.equalsIgnoreCase(qualifiedName)) {
-            if (currentState != ParserState.DEPENDENCY_INVALID) {
-                currentBundle.addToRequiredPackages(currentDependency.getFirst().name(), currentDependency.getFirst().range());
+            if (currentState == ParserState.FEATURE_VALID) {
+                if (repository.isIndexed(Artifact.FEATURE_CLASSIFIER, artifactID, currentUnit.version())) {
+                    RemoteP2Feature remoteP2Feature = new RemoteP2Feature(artifactID, currentUnit.version(), repository);
+                    cache.addRemoteFeature(remoteP2Feature);
+                    remoteP2Features.add(remoteP2Feature);
+                }
             }
-            currentDependency = null;
-            currentState = ParserState.PLUGIN_VALID;
-        }
-        if (
-            currentState.isInsideUnit()
-                && ContentFileConstants.INSTRUCTION_KEYWORD.equalsIgnoreCase(qualifiedName)
-                && ContentType.INSTRUCTION.equals(currentContentType)
-        ) {
-            currentContentType = null;
-        }
-        if ((currentState.isInsideUnit() || currentState.isInsideDependency())
-            && ContentFileConstants.FILTER_KEYWORD.equalsIgnoreCase(qualifiedName) && ContentType.FILTER.equals(currentContentType)) {
-            currentContentType = null;
         }
-        super.endElement(uri, localName, qualifiedName);
+        currentBundle = null;
+        currentUnit = null;
+        artifactID = null;
+        currentState = ParserState.ROOT;
+    }
+
+    private void endDependency() {
+        dependencyType = null;
+        dependencyName = null;
+        dependencyVersion = null;
+        dependencyRange = null;
+        currentState = ParserState.PLUGIN_VALID;
+    }
+
+    private void startText(ContentType contentType) {
+        currentContentType = contentType;
+        textLength = 0;
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
-        String content = new String(ch, start, length);
-        if (!currentState.isInvalid() && ContentType.INSTRUCTION.equals(currentContentType)) {
-            String level = getMatchOrNull(ContentFileConstants.START_LEVEL_PATTERN, content.trim());
-            if (!CommonUtils.isEmpty(level)) {
-                currentBundle.setStartLevel(Integer.parseInt(level));
-            }
+        if (currentContentType == null) {
+            return;
         }
-        if (ContentType.FILTER.equals(currentContentType)) {
-            String filter = content.trim();
-            if (!FilterEvaluator.parseEval(filter)) {
-                currentState = currentState.isInsideDependency() ? ParserState.DEPENDENCY_INVALID : ParserState.UNIT_INVALID;
-            }
+        // the parser may split element text in several chunks, so it is evaluated when the element ends
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
         }
+        System.arraycopy(ch, start, text, textLength, length);
+        textLength += length;
+    }
 
-        super.characters(ch, start, length);
+    /**
+     * Finds the last {@code startLevel:<number>} in the touchpoint instruction text
+     */
+    private static int findStartLevel(char[] text, int length) {
+        String key = ContentFileConstants.START_LEVEL_KEY;
+        for (int i = length - key.length(); i >= 0; i--) {
+            if (!regionEquals(text, i, i + key.length(), key)) {
+                continue;
+            }
+            int pos = i + key.length();
+            while (pos < length && Character.isWhitespace(text[pos])) {
+                pos++;
+            }
+            boolean negative = pos < length && text[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            int digitsStart = pos;
+            long value = 0;
+            while (pos < length && pos - digitsStart < 10 && text[pos] >= '0' && text[pos] <= '9') {
+                value = value * 10 + (text[pos] - '0');
+                pos++;
+            }
+            if (pos > digitsStart && value <= Integer.MAX_VALUE) {
+                return (int) (negative ? -value : value);
+            }
+        }
+        return NO_START_LEVEL;
     }
 
-    private String getMatchOrNull(Pattern pattern, String content) {
-        Matcher matcher = pattern.matcher(content);
-        if (!matcher.matches()) {
-            return null;
+    private static boolean regionEquals(char[] text, int start, int end, String value) {
+        if (value == null || end - start != value.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (text[i] != value.charAt(i - start)) {
+                return false;
+            }
         }
-        return matcher.group(1);
+        return true;
     }
 
     private ContentFileHandler(RemoteP2Repository repository, P2BundleLookupCache cache) {
@@ -279,6 +341,53 @@ public class ContentFileHandler extends DefaultHandler {
         this.cache = cache;
     }
 
+    private enum ContentElement {
+        UNIT(ContentFileConstants.UNIT_KEYWORD),
+        PROPERTY(ContentFileConstants.PROPERTY_KEYWORD),
+        REQUIRED(ContentFileConstants.REQUIRED_KEYWORD),
+        PROVIDED(ContentFileConstants.PROVIDED_KEYWORD),
+        REQUIRED_PROPERTIES(ContentFileConstants.REQUIRED_PROPERTIES_KEYWORD),
+        INSTRUCTION(ContentFileConstants.INSTRUCTION_KEYWORD),
+        FILTER(ContentFileConstants.FILTER_KEYWORD),
+        OTHER(null);
+
+        private static final ContentElement[] ELEMENTS = values();
+
+        private final String keyword;
+
+        ContentElement(String keyword) {
+            this.keyword = keyword;
+        }
+
+        // the parser passes names from its symbol table, so their hash codes are computed only once
+        private static ContentElement of(String qualifiedName) {
+            return switch (qualifiedName) {
+                case ContentFileConstants.UNIT_KEYWORD -> UNIT;
+                case ContentFileConstants.PROPERTY_KEYWORD -> PROPERTY;
+                case ContentFileConstants.REQUIRED_KEYWORD -> REQUIRED;
+                case ContentFileConstants.PROVIDED_KEYWORD -> PROVIDED;
+                case ContentFileConstants.REQUIRED_PROPERTIES_KEYWORD -> REQUIRED_PROPERTIES;
+                case ContentFileConstants.INSTRUCTION_KEYWORD -> INSTRUCTION;
+                case ContentFileConstants.FILTER_KEYWORD -> FILTER;
+                // wrappers and unit content which are not indexed
+                case "repository", "properties", "units", "update", "provides", "requires", "touchpoint",
+                     "touchpointData", "instructions", "artifacts", "artifact", "hostRequirements",
+                     "metaRequirements", "copyright", "license", "licenses", "references",
+                     "changes", "change", "from", "to", "patchScope", "scope", "lifeCycle" -> OTHER;
+                default -> ofIgnoreCase(qualifiedName);
+            };
+        }
+
+        // unexpected names, element names were always matched ignoring case
+        private static ContentElement ofIgnoreCase(String qualifiedName) {
+            for (ContentElement element : ELEMENTS) {
+                if (element.keyword != null && element.keyword.equalsIgnoreCase(qualifiedName)) {
+                    return element;
+                }
+            }
+            return OTHER;
+        }
+    }
 
     private enum ParserState {
         ROOT, // ROOT -> FEATURE_VALID | PLUGIN_VALID
@@ -336,95 +445,121 @@ public class ContentFileHandler extends DefaultHandler {
         FILTER
     }
 
-    private class FilterEvaluator {
-        public static boolean parseEval(String filter) {
-            if (filter.length() <= 1) {
+    /**
+     * Evaluates p2 LDAP filters like {@code (&(osgi.os=macosx)(|(osgi.arch=aarch64)(osgi.arch=x86_64)))}
+     * against the current platform. Only os, ws and arch equality is checked, other conditions are satisfied.
+     */
+    private static class FilterEvaluator {
+        private char[] filter;
+        private int length;
+        private int pos;
+
+        private boolean evaluate(char[] filter, int length) {
+            this.filter = filter;
+            this.length = length;
+            this.pos = 0;
+            skipWhitespace();
+            return peek() != '(' || parseFilter();
+        }
+
+        // expects pos at the opening bracket, leaves it after the closing one
+        private boolean parseFilter() {
+            pos++;
+            skipWhitespace();
+            boolean result;
+            switch (peek()) {
+                case '&' -> {
+                    pos++;
+                    if (regionEquals(filter, pos, Math.min(pos + 4, length), "amp;")) {
+                        pos += 4;
+                    }
+                    result = parseGroup(true);
+                }
+                case '|' -> {
+                    pos++;
+                    result = parseGroup(false);
+                }
+                case '!' -> {
+                    pos++;
+                    skipWhitespace();
+                    result = peek() != '(' || !parseFilter();
+                }
+                default -> result = parseCondition();
+            }
+            skipGroupEnd();
+            return result;
+        }
+
+        private boolean parseGroup(boolean and) {
+            boolean result = and;
+            skipWhitespace();
+            while (peek() == '(') {
+                boolean operand = parseFilter();
+                result = and ? result && operand : result || operand;
+                skipWhitespace();
+            }
+            return result;
+        }
+
+        private boolean parseCondition() {
+            int keyStart = pos;
+            while (pos < length && filter[pos] != '=' && filter[pos] != ')') {
+                pos++;
+            }
+            int keyEnd = pos;
+            if (peek() != '=' || keyEnd == keyStart) {
                 return true;
             }
-            char[] filterArray = filter.toCharArray();
-            return parseSubCondition(filterArray, 0);
+            pos++;
+            int valueStart = pos;
+            while (pos < length && filter[pos] != ')') {
+                pos++;
+            }
+            int valueEnd = pos;
+            while (keyEnd > keyStart && Character.isWhitespace(filter[keyEnd - 1])) {
+                keyEnd--;
+            }
+            while (valueStart < valueEnd && Character.isWhitespace(filter[valueStart])) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && Character.isWhitespace(filter[valueEnd - 1])) {
+                valueEnd--;
+            }
+            if (regionEquals(filter, keyStart, keyEnd, ContentFileConstants.OS_FILTER)) {
+                return regionEquals(filter, valueStart, valueEnd, BundleInfo.currentOS);
+            } else if (regionEquals(filter, keyStart, keyEnd, ContentFileConstants.WS_FILTER)) {
+                return regionEquals(filter, valueStart, valueEnd, BundleInfo.currentWS);
+            } else if (regionEquals(filter, keyStart, keyEnd, ContentFileConstants.ARCH_FILTER)) {
+                return regionEquals(filter, valueStart, valueEnd, BundleInfo.currentArch);
+            }
+            return true;
         }
 
-        private static boolean parseSubCondition(char[] filterArray, int i) {
-            Stack<Character> currentGroup = new Stack<>();
-            currentGroup.push('(');
-            int j = i + 1;
-            StringBuilder currentCondition = new StringBuilder();
-            boolean orCondition = false;
-            Boolean isTrue = null;
-            //(&amp;(osgi.os=macosx)(|(osgi.arch=aarch64)(osgi.arch=x86_64)))
-
-            while (!currentGroup.isEmpty()) {
-                char c = filterArray[j];
+        // skips the rest of the current group including its closing bracket
+        private void skipGroupEnd() {
+            int depth = 0;
+            while (pos < length) {
+                char c = filter[pos++];
                 if (c == '(') {
-                    if (currentGroup.size() == 1) {
-                        if (!currentCondition.isEmpty()) {
-                            String condition = currentCondition.toString();
-                            switch (condition) {
-                                case "&amp;":
-                                    break;
-                                case "|":
-                                    orCondition = true;
-                                    break;
-                                default:
-                                    return evalSimpleCondition(condition);
-                            }
-                            currentCondition = new StringBuilder();
-                        }
-                        if (isTrue == null) {
-                            isTrue = parseSubCondition(filterArray, j);
-                        } else {
-                            if (orCondition) {
-                                isTrue |= parseSubCondition(filterArray, j);
-                            } else {
-                                isTrue &= parseSubCondition(filterArray, j);
-                            }
-                        }
-                    }
-                    currentGroup.push('(');
+                    depth++;
                 } else if (c == ')') {
-                    if (!currentCondition.isEmpty()) {
-                        String condition = currentCondition.toString();
-                        switch (condition) {
-                            case "&amp;":
-                                break;
-                            case "|":
-                                orCondition = true;
-                                break;
-                            default:
-                                return evalSimpleCondition(condition);
-                        }
-                        currentCondition = new StringBuilder();
+                    if (depth == 0) {
+                        return;
                     }
-                    currentGroup.pop();
-                } else if (currentGroup.size() == 1) {
-                    currentCondition.append(filterArray[j]);
+                    depth--;
                 }
-                j++;
             }
-            return isTrue == null | Boolean.TRUE.equals(isTrue);
         }
-        private static boolean evalSimpleCondition(String condition) {
-            String[] split = condition.split("=");
-            if (split.length != 2) {
-                return true;
-            }
-            String parameter = split[0];
-            String value = split[1];
-            switch (parameter) {
-                case ContentFileConstants.OS_FILTER -> {
-                    return value.equals(BundleInfo.currentOS);
-                }
-                case ContentFileConstants.WS_FILTER -> {
-                    return value.equals(BundleInfo.currentWS);
-                }
-                case ContentFileConstants.ARCH_FILTER -> {
-                    return value.equals(BundleInfo.currentArch);
-                }
+
+        private void skipWhitespace() {
+            while (pos < length && Character.isWhitespace(filter[pos])) {
+                pos++;
             }
-            return true;
         }
 
+        private char peek() {
+            return pos < length ? filter[pos] : 0;
+        }
     }
 
 }
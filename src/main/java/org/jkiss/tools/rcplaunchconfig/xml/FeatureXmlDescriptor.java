@@ -0,0 +1,106 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.xml;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dependencies declared in feature.xml, in the document order.
+ * Feature file is parsed once, products resolve the same entries without reading XML again.
+ */
+public record FeatureXmlDescriptor(@Nullable String version, @Nonnull List<Entry> entries) {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final String VERSION_ATTR_NAME = "version";
+
+    /**
+     * Included feature or required plugin
+     */
+    public record Entry(boolean feature, @Nonnull String id, @Nullable Integer startLevel) {
+    }
+
+    /**
+     * Collects the same elements which {@link XmlReader} extensions resolve for feature files
+     */
+    @Nonnull
+    public static FeatureXmlDescriptor parse(@Nonnull File featureXmlFile) throws IOException, XMLStreamException {
+        List<Entry> entries = new ArrayList<>();
+        String version = null;
+        try (var inputStream = new FileInputStream(featureXmlFile);
+             var bufferedInput = new BufferedInputStream(inputStream)
+        ) {
+            var reader = XML_INPUT_FACTORY.createXMLStreamReader(bufferedInput);
+            try {
+                boolean rootElement = true;
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        if (rootElement) {
+                            // root <feature> describes the feature itself
+                            version = reader.getAttributeValue(null, VERSION_ATTR_NAME);
+                            rootElement = false;
+                            continue;
+                        }
+                        readElement(reader, entries);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return new FeatureXmlDescriptor(version, List.copyOf(entries));
+    }
+
+    private static void readElement(@Nonnull XMLStreamReader reader, @Nonnull List<Entry> entries) {
+        switch (reader.getLocalName()) {
+            case "feature", "includes" -> {
+                // included features are resolved regardless of the declared OS
+                String id = reader.getAttributeValue(null, XmlReaderExtension.ID_ATTR_NAME);
+                if (id != null) {
+                    entries.add(new Entry(true, id, null));
+                }
+            }
+            case "plugin" -> addPlugin(reader, reader.getAttributeValue(null, XmlReaderExtension.ID_ATTR_NAME), entries);
+            case "import" -> addPlugin(reader, reader.getAttributeValue(null, XmlReaderExtension.PLUGIN_ATTR_NAME), entries);
+            default -> {
+            }
+        }
+    }
+
+    private static void addPlugin(
+        @Nonnull XMLStreamReader reader,
+        @Nullable String id,
+        @Nonnull List<Entry> entries
+    ) {
+        if (id == null || !XmlReaderExtension.matchesDeclaredOS(reader)) {
+            return;
+        }
+        var startLevel = reader.getAttributeValue(null, XmlReaderExtension.START_LEVEL_ATTR_NAME);
+        entries.add(new Entry(false, id, startLevel != null ? Integer.parseInt(startLevel) : null));
+    }
+}
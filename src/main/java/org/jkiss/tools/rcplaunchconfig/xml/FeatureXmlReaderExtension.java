@@ -23,19 +23,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import javax.xml.stream.XMLEventReader;
+import java.util.Map;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
+import javax.xml.stream.XMLStreamReader;
 
 class FeatureXmlReaderExtension extends XmlReaderExtension {
 
     private static final Logger log = LoggerFactory.getLogger(FeatureXmlReaderExtension.class);
 
-    static void resolveFeature(@Nonnull Result result, @Nonnull StartElement startElement) {
-        var attribute = startElement.getAttributeByName(ID_ATTR_NAME);
-        if (attribute != null) {
+    static void resolveFeature(@Nonnull Result result, @Nonnull XMLStreamReader reader) {
+        var featureId = reader.getAttributeValue(null, ID_ATTR_NAME);
+        if (featureId != null) {
             try {
-                FeatureResolver.resolveFeatureDependencies(result, attribute.getValue());
+                FeatureResolver.resolveFeatureDependencies(result, featureId);
             } catch (IOException | XMLStreamException e) {
                 log.error("Failed to resolve feature", e);
             }
@@ -43,10 +43,9 @@ class FeatureXmlReaderExtension extends XmlReaderExtension {
     }
 
     @Override
-    public void resolveStartElement(@Nonnull Result result, @Nonnull StartElement startElement, XMLEventReader reader) {
-        var nameLocalPart = startElement.getName().getLocalPart();
-        if (nameLocalPart.equals("includes") || nameLocalPart.equals("feature")) {
-            resolveFeature(result, startElement);
-        }
+    public void registerHandlers(@Nonnull Map<String, ElementHandler> handlers) {
+        // included features are resolved regardless of the declared OS
+        handlers.put("includes", FeatureXmlReaderExtension::resolveFeature);
+        handlers.put("feature", FeatureXmlReaderExtension::resolveFeature);
     }
 }
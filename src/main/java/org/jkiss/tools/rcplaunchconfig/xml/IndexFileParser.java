@@ -1,81 +1,124 @@
 
 package org.jkiss.tools.rcplaunchconfig.xml;
 
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.jkiss.tools.rcplaunchconfig.Artifact;
 import org.jkiss.tools.rcplaunchconfig.p2.repository.exception.RepositoryInitialisationError;
 import org.jkiss.tools.rcplaunchconfig.util.Version;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+/**
+ * Streaming reader of p2 repository index files.
+ * The factory is shared, every call creates its own reader, so repositories may be indexed concurrently.
+ */
 public class IndexFileParser {
     public static final IndexFileParser INSTANCE = new IndexFileParser();
-    private final DocumentBuilder builder;
 
-    public List<String> listChildrenRepositoriesFromFile(File file) throws IOException, SAXException {
-        Document doc = builder.parse(file);
-        NodeList nodeList = doc.getElementsByTagName("child");
+    private static final String DOWNLOAD_SIZE_PROPERTY = "download.size";
+    private static final String DOWNLOAD_CHECKSUM_PROPERTY = "download.checksum.sha-256";
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public List<String> listChildrenRepositoriesFromFile(File file) throws IOException, XMLStreamException {
         List<String> locations = new ArrayList<>();
-        for (int temp = 0; temp < nodeList.getLength(); temp++) {
-            Node node = nodeList.item(temp);
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element childElement = (Element) node;
-                locations.add(childElement.getAttribute("location"));
+        try (var inputStream = Files.newInputStream(file.toPath());
+             var bufferedInput = new BufferedInputStream(inputStream)
+        ) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(bufferedInput);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "child".equals(reader.getLocalName())) {
+                        String location = reader.getAttributeValue(null, "location");
+                        locations.add(location == null ? "" : location);
+                    }
+                }
+            } finally {
+                reader.close();
             }
         }
         return locations;
-
     }
 
-    public List<Artifact> listArtifactsFromIndexFile(File file) throws IOException, SAXException, RepositoryInitialisationError {
-        Document document = builder.parse(file);
-        NodeList artifactNodeList = getArtifactRootNode(document);
-        ArrayList<Artifact> artifacts = new ArrayList<>();
-        for (int i = 0; i < artifactNodeList.getLength(); i++) {
-            Node node = artifactNodeList.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = (Element) node;
-                String classifier = element.getAttribute("classifier");
-                String id = element.getAttribute("id");
-                Version version = new Version(element.getAttribute("version"));
-                artifacts.add(new Artifact(classifier, id, version));
-            } else {
-                throw new RepositoryInitialisationError("Incorrect index file structure");
+    /**
+     * Passes every artifact of the artifacts.xml file to the consumer as soon as its element is read
+     */
+    public void readArtifactsFromIndexFile(
+        @Nonnull File file,
+        @Nonnull Consumer<Artifact> consumer
+    ) throws IOException, XMLStreamException, RepositoryInitialisationError {
+        try (var inputStream = Files.newInputStream(file.toPath());
+             var bufferedInput = new BufferedInputStream(inputStream)
+        ) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(bufferedInput);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "artifact".equals(reader.getLocalName())) {
+                        consumer.accept(readArtifact(reader));
+                    }
+                }
+            } finally {
+                reader.close();
             }
         }
-        return artifacts;
     }
 
-    private static NodeList getArtifactRootNode(Document document) {
-        Element root = document.getDocumentElement();
-        NodeList artifactRepository = root.getElementsByTagName("artifactRepository");
-        for (int i = 0; i < artifactRepository.getLength(); i++) {
-            Node item = artifactRepository.item(i);
-            if (item.getNodeType() == Node.ELEMENT_NODE && "properties".equals(((Element) item).getTagName())) {
-                root = ((Element) item);
-                break;
+    @Nonnull
+    private static Artifact readArtifact(@Nonnull XMLStreamReader reader) throws XMLStreamException, RepositoryInitialisationError {
+        String classifier = reader.getAttributeValue(null, "classifier");
+        String id = reader.getAttributeValue(null, "id");
+        String version = reader.getAttributeValue(null, "version");
+        if (id == null || version == null) {
+            throw new RepositoryInitialisationError("Incorrect index file structure");
+        }
+        Long downloadSize = null;
+        String checksum = null;
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if ("property".equals(reader.getLocalName())) {
+                    String name = reader.getAttributeValue(null, "name");
+                    if (DOWNLOAD_SIZE_PROPERTY.equals(name)) {
+                        downloadSize = parseSize(reader.getAttributeValue(null, "value"));
+                    } else if (DOWNLOAD_CHECKSUM_PROPERTY.equals(name)) {
+                        checksum = reader.getAttributeValue(null, "value");
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
         }
-        return root.getElementsByTagName("artifact");
+        return new Artifact(classifier == null ? "" : classifier, id, Version.of(version), downloadSize, checksum);
     }
 
-    private IndexFileParser() {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setIgnoringElementContentWhitespace(true);
+    @Nullable
+    private static Long parseSize(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
         try {
-            builder = factory.newDocumentBuilder();
-        } catch (Exception exception) {
-            throw new RuntimeException(exception);
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
+
+    private IndexFileParser() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
 }
@@ -2,13 +2,12 @@ package org.jkiss.tools.rcplaunchconfig.xml;
 
 import org.jkiss.tools.rcplaunchconfig.Result;
 
-import javax.xml.stream.events.StartElement;
-
-import javax.xml.stream.events.XMLEvent;
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,36 +16,24 @@ public class LaunchArgumentsXMLReaderExtension extends XmlReaderExtension {
     public static final Pattern CLI_REGEX = Pattern.compile("(?<=\\s|^)-{1,2}\\S*(?:\\s+[^\\s-]\\S*)?");
 
     @Override
-    public void resolveStartElement(Result result, StartElement startElement, XMLEventReader reader) throws XMLStreamException {
-        if ("vmArgs".equals(startElement.getName().getLocalPart())) {
-            String[] strings = extractArgs(reader, startElement.getName().getLocalPart());
-            result.getArguments().setVmARGS(strings);
-        }
-        if ("vmArgsMac".equals(startElement.getName().getLocalPart())) {
-            String[] strings = extractArgs(reader, startElement.getName().getLocalPart());
-            result.getArguments().setVmARGSMac(strings);
-        }
-        if ("programArgs".equals(startElement.getName().getLocalPart())) {
-            String[] strings = extractArgs(reader, startElement.getName().getLocalPart());
-            result.getArguments().setProgramARGS(strings);
-        }
-        if ("programArgsMac".equals(startElement.getName().getLocalPart())) {
-            String[] strings = extractArgs(reader, startElement.getName().getLocalPart());
-            result.getArguments().setGetProgramARGSMacOS(strings);
-        }
+    public void registerHandlers(Map<String, ElementHandler> handlers) {
+        handlers.put("vmArgs", (result, reader) -> result.getArguments().setVmARGS(extractArgs(reader)));
+        handlers.put("vmArgsMac", (result, reader) -> result.getArguments().setVmARGSMac(extractArgs(reader)));
+        handlers.put("programArgs", (result, reader) -> result.getArguments().setProgramARGS(extractArgs(reader)));
+        handlers.put("programArgsMac", (result, reader) -> result.getArguments().setGetProgramARGSMacOS(extractArgs(reader)));
     }
 
-    private String[] extractArgs(XMLEventReader reader, String startElement) throws XMLStreamException {
-        // Assuming Result has a method to add VM arguments
+    private String[] extractArgs(XMLStreamReader reader) throws XMLStreamException {
+        String startElement = reader.getLocalName();
         StringBuilder args = new StringBuilder();
 
         while (reader.hasNext()) {
-            XMLEvent event = reader.nextEvent();
-            if (event.isEndElement() && startElement.equals(event.asEndElement().getName().getLocalPart())) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && startElement.equals(reader.getLocalName())) {
                 break;
             }
-            if (event.isCharacters()) {
-                args.append(event.asCharacters().getData().trim()).append(" ");
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                args.append(reader.getText().trim()).append(" ");
             }
         }
         Matcher matcher = CLI_REGEX.matcher(args);
@@ -59,4 +46,3 @@ public class LaunchArgumentsXMLReaderExtension extends XmlReaderExtension {
         return argsList.toArray(new String[0]);
     }
 }
-
@@ -17,6 +17,7 @@
 package org.jkiss.tools.rcplaunchconfig.xml;
 
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.jkiss.tools.rcplaunchconfig.Result;
 import org.jkiss.tools.rcplaunchconfig.p2.P2RepositoryManager;
 import org.jkiss.tools.rcplaunchconfig.resolvers.PluginResolver;
@@ -25,47 +26,31 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
+import java.util.Map;
+import javax.xml.stream.XMLStreamReader;
 
 class PluginXmlReaderExtension extends XmlReaderExtension {
 
     private static final Logger log = LoggerFactory.getLogger(PluginXmlReaderExtension.class);
 
-    static void resolvePlugin(@Nonnull Result result, @Nonnull StartElement startElement, @Nonnull Attribute idAttr) {
-        var startLevelAttr = startElement.getAttributeByName(START_LEVEL_ATTR_NAME);
+    static void resolvePlugin(@Nonnull Result result, @Nonnull XMLStreamReader reader, @Nullable String pluginId) {
+        if (pluginId == null || !matchesDeclaredOS(reader)) {
+            return;
+        }
+        var startLevelAttr = reader.getAttributeValue(null, START_LEVEL_ATTR_NAME);
         var startLevel = startLevelAttr != null
-            ? Integer.parseInt(startLevelAttr.getValue())
+            ? Integer.parseInt(startLevelAttr)
             : null;
         try {
-            PluginResolver.resolvePluginDependencies(result, new Pair<>(idAttr.getValue(), null), startLevel, P2RepositoryManager.INSTANCE.getLookupCache());
+            PluginResolver.resolvePluginDependencies(result, new Pair<>(pluginId, null), startLevel, P2RepositoryManager.INSTANCE.getLookupCache());
         } catch (IOException e) {
             log.error("Failed to resolve plugin", e);
         }
     }
 
     @Override
-    public void resolveStartElement(@Nonnull Result result, @Nonnull StartElement startElement, XMLEventReader reader) {
-        if (!matchesDeclaredOS(startElement)) {
-            return;
-        }
-
-        var nameLocalPart = startElement.getName().getLocalPart();
-        Attribute attribute = null;
-        switch (nameLocalPart) {
-            case "plugin": {
-                attribute = startElement.getAttributeByName(ID_ATTR_NAME);
-                break;
-            }
-            case "import": {
-                attribute = startElement.getAttributeByName(PLUGIN_ATTR_NAME);
-                break;
-            }
-        }
-        if (attribute == null) {
-            return;
-        }
-        resolvePlugin(result, startElement, attribute);
+    public void registerHandlers(@Nonnull Map<String, ElementHandler> handlers) {
+        handlers.put("plugin", (result, reader) -> resolvePlugin(result, reader, reader.getAttributeValue(null, ID_ATTR_NAME)));
+        handlers.put("import", (result, reader) -> resolvePlugin(result, reader, reader.getAttributeValue(null, PLUGIN_ATTR_NAME)));
     }
 }
@@ -22,57 +22,47 @@ import org.jkiss.tools.rcplaunchconfig.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.events.StartElement;
+import javax.xml.stream.XMLStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 
 class ProjectXmlReaderExtension extends XmlReaderExtension {
 
     private static final Logger log = LoggerFactory.getLogger(ProjectXmlReaderExtension.class);
 
-    private static final QName LOCATION_NAME = new QName("", "location");
+    private static final String LOCATION_ATTR_NAME = "location";
 
     @Override
-    public void resolveStartElement(@Nonnull Result result, @Nonnull StartElement startElement, XMLEventReader reader) {
-        if (!matchesDeclaredOS(startElement)) {
+    public void registerHandlers(@Nonnull Map<String, ElementHandler> handlers) {
+        handlers.put("product", ProjectXmlReaderExtension::resolveProduct);
+        handlers.put("splash", ProjectXmlReaderExtension::resolveSplash);
+    }
+
+    private static void resolveProduct(@Nonnull Result result, @Nonnull XMLStreamReader reader) {
+        if (!matchesDeclaredOS(reader)) {
             return;
         }
-        var nameLocalPart = startElement.getName().getLocalPart();
-        switch (nameLocalPart) {
-            case "product": {
-                result.setProductInfo(
-                    startElement.getAttributeByName(new QName("", "name")).getValue(),
-                    startElement.getAttributeByName(new QName("", "uid")).getValue(),
-                    startElement.getAttributeByName(new QName("", "id")).getValue(),
-                    startElement.getAttributeByName(new QName("", "application")).getValue());
-                break;
-            }
-            case "feature": {
-                FeatureXmlReaderExtension.resolveFeature(result, startElement);
-                break;
-            }
-            case "plugin": {
-                var idAttr = startElement.getAttributeByName(ID_ATTR_NAME);
-                if (idAttr != null) {
-                    PluginXmlReaderExtension.resolvePlugin(result, startElement, idAttr);
-                }
-                break;
-            }
-            case "splash": {
-                var locationAttr = startElement.getAttributeByName(LOCATION_NAME);
-                if (locationAttr == null) {
-                    log.warn("Invalid 'splash' tag: {}", startElement);
-                    break;
-                }
-                for (Path bundlePath : PathsManager.INSTANCE.getBundlesLocations()) {
-                    Path splashPath = bundlePath.resolve(locationAttr.getValue());
-                    if (Files.exists(splashPath)) {
-                        result.setOsgiSplashPath(splashPath);
-                        break;
-                    }
-                }
+        result.setProductInfo(
+            reader.getAttributeValue(null, "name"),
+            reader.getAttributeValue(null, "uid"),
+            reader.getAttributeValue(null, ID_ATTR_NAME),
+            reader.getAttributeValue(null, "application"));
+    }
+
+    private static void resolveSplash(@Nonnull Result result, @Nonnull XMLStreamReader reader) {
+        if (!matchesDeclaredOS(reader)) {
+            return;
+        }
+        var location = reader.getAttributeValue(null, LOCATION_ATTR_NAME);
+        if (location == null) {
+            log.warn("Invalid 'splash' tag at line {}", reader.getLocation().getLineNumber());
+            return;
+        }
+        for (Path bundlePath : PathsManager.INSTANCE.getBundlesLocations()) {
+            Path splashPath = bundlePath.resolve(location);
+            if (Files.exists(splashPath)) {
+                result.setOsgiSplashPath(splashPath);
                 break;
             }
         }
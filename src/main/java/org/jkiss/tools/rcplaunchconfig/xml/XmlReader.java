@@ -20,11 +20,14 @@ import jakarta.annotation.Nonnull;
 import org.jkiss.tools.rcplaunchconfig.Result;
 
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public enum XmlReader {
     INSTANCE();
@@ -38,20 +41,41 @@ public enum XmlReader {
         new LaunchArgumentsXMLReaderExtension()
     };
 
+    // every element is resolved by a single extension
+    private final Map<String, XmlReaderExtension.ElementHandler> HANDLERS = createHandlers(EXTENSIONS);
+
     public void parseXmlFile(@Nonnull Result result, @Nonnull File xmlFile) throws IOException, XMLStreamException {
         try (var inputStream = new FileInputStream(xmlFile);
              var bufferedInput = new BufferedInputStream(inputStream)
         ) {
-            var reader = XML_INPUT_FACTORY.createXMLEventReader(bufferedInput);
-            while (reader.hasNext()) {
-                var nextEvent = reader.nextEvent();
-                if (nextEvent.isStartElement()) {
-                    var startElement = nextEvent.asStartElement();
-                    for (var extension : EXTENSIONS) {
-                        extension.resolveStartElement(result, startElement, reader);
+            var reader = XML_INPUT_FACTORY.createXMLStreamReader(bufferedInput);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        var handler = HANDLERS.get(reader.getLocalName());
+                        if (handler != null) {
+                            handler.resolveElement(result, reader);
+                        }
                     }
                 }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Nonnull
+    private static Map<String, XmlReaderExtension.ElementHandler> createHandlers(@Nonnull XmlReaderExtension[] extensions) {
+        Map<String, XmlReaderExtension.ElementHandler> handlers = new HashMap<>();
+        for (XmlReaderExtension extension : extensions) {
+            Map<String, XmlReaderExtension.ElementHandler> extensionHandlers = new HashMap<>();
+            extension.registerHandlers(extensionHandlers);
+            for (var handler : extensionHandlers.entrySet()) {
+                if (handlers.putIfAbsent(handler.getKey(), handler.getValue()) != null) {
+                    throw new IllegalStateException("Element '" + handler.getKey() + "' is resolved by multiple extensions");
+                }
             }
         }
+        return handlers;
     }
 }
@@ -20,32 +20,36 @@ import jakarta.annotation.Nonnull;
 import org.jkiss.tools.rcplaunchconfig.Result;
 import org.jkiss.tools.rcplaunchconfig.util.BundleUtils;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
+import javax.xml.stream.XMLStreamReader;
+import java.util.Map;
 
 abstract class XmlReaderExtension {
 
-    protected static final QName ID_ATTR_NAME = new QName("", "id");
-    protected static final QName OS_ATTR_NAME = new QName("", "os");
-    protected static final QName WS_ATTR_NAME = new QName("", "ws");
-    protected static final QName START_LEVEL_ATTR_NAME = new QName("", "startLevel");
-    private static final QName ARCH_ATTR_NAME = new QName("", "arch");
-    protected static final QName PLUGIN_ATTR_NAME = new QName("", "plugin");
+    protected static final String ID_ATTR_NAME = "id";
+    protected static final String OS_ATTR_NAME = "os";
+    protected static final String WS_ATTR_NAME = "ws";
+    protected static final String START_LEVEL_ATTR_NAME = "startLevel";
+    private static final String ARCH_ATTR_NAME = "arch";
+    protected static final String PLUGIN_ATTR_NAME = "plugin";
+
+    /**
+     * Resolves the element the reader is positioned at
+     */
+    @FunctionalInterface
+    interface ElementHandler {
+        void resolveElement(@Nonnull Result result, @Nonnull XMLStreamReader reader) throws XMLStreamException;
+    }
 
-    public static boolean matchesDeclaredOS(@Nonnull StartElement startElement) {
-        Attribute osAttr = startElement.getAttributeByName(OS_ATTR_NAME);
-        Attribute wsAttr = startElement.getAttributeByName(WS_ATTR_NAME);
-        Attribute archAttr = startElement.getAttributeByName(ARCH_ATTR_NAME);
+    public static boolean matchesDeclaredOS(@Nonnull XMLStreamReader reader) {
         return BundleUtils.matchesDeclaredOS(
-            wsAttr == null ? null : wsAttr.getValue(),
-            osAttr == null ? null : osAttr.getValue(),
-            archAttr == null ? null : archAttr.getValue());
+            reader.getAttributeValue(null, WS_ATTR_NAME),
+            reader.getAttributeValue(null, OS_ATTR_NAME),
+            reader.getAttributeValue(null, ARCH_ATTR_NAME));
     }
 
-
-
-    public abstract void resolveStartElement(@Nonnull Result result, @Nonnull StartElement startElement, XMLEventReader reader) throws XMLStreamException;
+    /**
+     * Registers handlers by local names of the elements the extension resolves
+     */
+    public abstract void registerHandlers(@Nonnull Map<String, ElementHandler> handlers);
 }
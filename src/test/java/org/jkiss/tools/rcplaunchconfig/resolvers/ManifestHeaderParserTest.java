@@ -0,0 +1,97 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.resolvers;
+
+import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestHeaderParser.Clause;
+import org.jkiss.tools.rcplaunchconfig.resolvers.ManifestHeaderParser.HeaderKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManifestHeaderParserTest {
+
+    @Test
+    void emptyHeader() {
+        assertTrue(ManifestHeaderParser.parse(null, HeaderKind.BUNDLE).isEmpty());
+        assertTrue(ManifestHeaderParser.parse("  ", HeaderKind.PACKAGE).isEmpty());
+    }
+
+    @Test
+    void requireBundleClauses() {
+        List<Clause> clauses = ManifestHeaderParser.parse(
+            "org.eclipse.core.runtime;bundle-version=\"[3.29.0,4.0.0)\";visibility:=reexport,\n"
+                + " org.eclipse.ui;resolution:=optional, org.jkiss.utils",
+            HeaderKind.BUNDLE
+        );
+        assertEquals(List.of(
+            new Clause("org.eclipse.core.runtime", "[3.29.0,4.0.0)", false, true),
+            new Clause("org.eclipse.ui", null, true, false),
+            new Clause("org.jkiss.utils", null, false, false)
+        ), clauses);
+    }
+
+    @Test
+    void multipleNamesShareParameters() {
+        assertEquals(List.of(
+            new Clause("org.jkiss.a", "1.2.0", false, false),
+            new Clause("org.jkiss.b", "1.2.0", false, false)
+        ), ManifestHeaderParser.parse("org.jkiss.a; org.jkiss.b; version=1.2.0", HeaderKind.PACKAGE));
+    }
+
+    @Test
+    void quotedValues() {
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", "[1.0,2.0)", false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;uses:=\"org.jkiss.b,org.jkiss.c\";version=\"[1.0,2.0)\"", HeaderKind.PACKAGE)
+        );
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", "1.0", false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;version=\"1.\\0\"", HeaderKind.PACKAGE)
+        );
+    }
+
+    @Test
+    void versionAttributeDependsOnHeaderKind() {
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", null, false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;bundle-version=1.0.0", HeaderKind.PACKAGE)
+        );
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", "1.0.0", false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;specification-version=1.0.0", HeaderKind.PACKAGE)
+        );
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", null, false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;version=1.0.0", HeaderKind.BUNDLE)
+        );
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", "1.0.0", false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;Bundle-Version=1.0.0", HeaderKind.BUNDLE)
+        );
+    }
+
+    @Test
+    void unknownParametersAreIgnored() {
+        assertEquals(
+            List.of(new Clause("org.jkiss.a", null, false, false), new Clause("org.jkiss.b", null, false, false)),
+            ManifestHeaderParser.parse("org.jkiss.a;x-internal:=true;mandatory:=\"a,b\",org.jkiss.b;foo=bar", HeaderKind.PACKAGE)
+        );
+    }
+}
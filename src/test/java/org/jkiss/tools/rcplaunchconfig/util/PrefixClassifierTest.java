@@ -0,0 +1,130 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.util;
+
+import org.jkiss.tools.rcplaunchconfig.producers.DevPropertiesProducer;
+import org.jkiss.tools.rcplaunchconfig.resolvers.PackageChecker;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrefixClassifierTest {
+
+    private enum Kind {
+        A,
+        B,
+        NONE
+    }
+
+    // lists and checks used before the classifier was introduced
+    private static final Set<String> BASELINE_EXCLUDED_PACKAGES = Set.of("org.h2", "system.bundle");
+    private static final List<String> BASELINE_EXCLUDED_PACKAGE_GROUPS = List.of(
+        "java.", "sun.", "javax.net", "javax.crypto", "javax.security", "javax.sql", "javax.naming", "javax.xml.",
+        "javax.xml.stream", "javax.mail", "javax.servlet", "javax.activation", "javax.management", "javax.imageio",
+        "javax.script", "org.xml.sax", "org.w3c.dom", "javax.crypto.interfaces"
+    );
+    private static final List<String> BASELINE_WORKSPACE_BUNDLES = List.of(
+        "org.jkiss", "io.cloudbeaver", "com.dbeaver", "swtbot-simple", "connections", "unit"
+    );
+
+    @Test
+    void longestPatternWins() {
+        PrefixClassifier<Kind> classifier = PrefixClassifier.builder(Kind.NONE)
+            .add("org.*", Kind.A)
+            .add("org.jkiss.*", Kind.B)
+            .add("org.jkiss.utils", Kind.A)
+            .build();
+        assertEquals(Kind.A, classifier.classify("org.eclipse.ui"));
+        assertEquals(Kind.B, classifier.classify("org.jkiss.dbeaver"));
+        assertEquals(Kind.A, classifier.classify("org.jkiss.utils"));
+        assertEquals(Kind.B, classifier.classify("org.jkiss.utils.io"));
+        assertEquals(Kind.NONE, classifier.classify("com.dbeaver"));
+        assertEquals(Kind.NONE, classifier.classify("or"));
+    }
+
+    @Test
+    void exactPatternMatchesWholeName() {
+        PrefixClassifier<Kind> classifier = PrefixClassifier.builder(Kind.NONE)
+            .add("org.h2", Kind.A)
+            .build();
+        assertEquals(Kind.A, classifier.classify("org.h2"));
+        assertEquals(Kind.NONE, classifier.classify("org.h2.tools"));
+        assertEquals(Kind.NONE, classifier.classify("org.h"));
+        assertEquals(Kind.NONE, classifier.classify(""));
+    }
+
+    @Test
+    void patternsList() {
+        PrefixClassifier<Kind> classifier = PrefixClassifier.builder(Kind.NONE)
+            .addAll(" org.jkiss* ; ;!org.jkiss.bundle*;*", Kind.A, Kind.B)
+            .build();
+        assertEquals(Kind.A, classifier.classify("org.jkiss.dbeaver"));
+        assertEquals(Kind.B, classifier.classify("org.jkiss.bundle.gis"));
+        assertEquals(Kind.A, classifier.classify("com.dbeaver"));
+        assertEquals(Kind.A, classifier.classify(""));
+    }
+
+    @Test
+    void hitsAreCounted() {
+        PrefixClassifier<Kind> classifier = PrefixClassifier.builder(Kind.NONE)
+            .add("a*", Kind.A)
+            .build();
+        classifier.classify("a");
+        classifier.classify("ab");
+        classifier.classify("b");
+        assertEquals(Map.of(Kind.A, 2L, Kind.B, 0L, Kind.NONE, 1L), classifier.getHits());
+    }
+
+    @Test
+    void excludedPackagesMatchBaseline() {
+        for (String name : generateNames(BASELINE_EXCLUDED_PACKAGES, BASELINE_EXCLUDED_PACKAGE_GROUPS)) {
+            boolean expected = BASELINE_EXCLUDED_PACKAGES.contains(name)
+                || BASELINE_EXCLUDED_PACKAGE_GROUPS.stream().anyMatch(name::startsWith);
+            assertEquals(expected, PackageChecker.INSTANCE.isPackageExcluded(name), name);
+        }
+    }
+
+    @Test
+    void workspaceBundlesMatchBaseline() {
+        for (String name : generateNames(List.of("org.jkiss.bundle"), BASELINE_WORKSPACE_BUNDLES)) {
+            boolean expected = !name.startsWith("org.jkiss.bundle")
+                && BASELINE_WORKSPACE_BUNDLES.stream().anyMatch(name::startsWith);
+            assertEquals(expected, DevPropertiesProducer.isBundleAcceptable(name), name);
+        }
+    }
+
+    /**
+     * Every prefix of the patterns alone and followed by some suffixes
+     */
+    private static Set<String> generateNames(Collection<String> first, Collection<String> second) {
+        List<String> suffixes = List.of("", ".", "x", ".core", "s.ui", "_1.0");
+        Set<String> names = new LinkedHashSet<>();
+        for (Collection<String> patterns : List.of(first, second)) {
+            for (String pattern : patterns) {
+                for (int length = 0; length <= pattern.length(); length++) {
+                    for (String suffix : suffixes) {
+                        names.add(pattern.substring(0, length) + suffix);
+                    }
+                }
+            }
+        }
+        names.addAll(List.of("org.eclipse.ui", "com.google.guava", "javax.inject", "javax.annotation", "jakarta.xml.bind"));
+        return names;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2024 DBeaver Corp and others
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.tools.rcplaunchconfig.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionRangeTest {
+
+    @Test
+    void parseAndFormat() {
+        assertNull(VersionRange.fromString(null));
+        assertNull(VersionRange.fromString("0.0.0"));
+        assertEquals("1.2.0", VersionRange.fromString("1.2").toString());
+        assertEquals("[1.0.0,2.0.0)", VersionRange.fromString("[1.0,2.0)").toString());
+        assertEquals("[1.0.0,)", VersionRange.fromString("[1.0,)").toString());
+        assertSame(VersionRange.fromString("[1.0,2.0)"), VersionRange.fromString("[1.0,2.0)"));
+        assertEquals(VersionRange.fromString("[1.0,2.0)"), VersionRange.fromString("[1.0.0,2.0.0)"));
+    }
+
+    @Test
+    void emptiness() {
+        assertFalse(range("1.0").isEmpty());
+        assertFalse(range("[1.0,1.0]").isEmpty());
+        assertFalse(range("[1.0,2.0)").isEmpty());
+        assertTrue(range("[1.0,1.0)").isEmpty());
+        assertTrue(range("(1.0,1.0]").isEmpty());
+        assertTrue(range("[2.0,1.0]").isEmpty());
+    }
+
+    @Test
+    void intersection() {
+        assertEquals(range("[1.5,2.0)"), range("[1.0,2.0)").intersect(range("[1.5,3.0)")));
+        assertEquals(range("(1.0,2.0)"), range("[1.0,2.0]").intersect(range("(1.0,2.0)")));
+        assertEquals(range("[1.5,2.0)"), range("1.5").intersect(range("[1.0,2.0)")));
+        assertTrue(range("[1.0,2.0)").intersect(range("[2.0,3.0)")).isEmpty());
+        assertFalse(range("[1.0,2.0]").intersect(range("[2.0,3.0)")).isEmpty());
+
+        VersionRange range = range("[1.0,2.0)");
+        assertSame(range, range.intersect(range("0.5")));
+        assertSame(range, VersionRange.intersect(range, null));
+        assertSame(range, VersionRange.intersect(null, range));
+        assertNull(VersionRange.intersect(null, null));
+    }
+
+    @Test
+    void intersectionContainsVersionsOfBothRanges() {
+        String[] ranges = {"1.0", "[1.0,2.0)", "(1.0,2.0]", "[1.5,1.5]", "(0.5,1.5)", "[2.0,3.0)", "[1.0,)"};
+        String[] versions = {"0.5.0", "1.0.0", "1.0.0.v1", "1.5.0", "2.0.0", "2.5.0", "3.0.0"};
+        for (String first : ranges) {
+            for (String second : ranges) {
+                VersionRange intersection = range(first).intersect(range(second));
+                for (String versionText : versions) {
+                    Version version = Version.of(versionText);
+                    assertEquals(
+                        range(first).versionIsSuitable(version) && range(second).versionIsSuitable(version),
+                        intersection.versionIsSuitable(version),
+                        first + " & " + second + " for " + version
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void mergeRequirements() {
+        Map<String, VersionRange> requirements = new LinkedHashMap<>();
+        assertTrue(BundleUtils.mergeRequirement(requirements, "org.jkiss.a", range("[1.0,3.0)")));
+        assertTrue(BundleUtils.mergeRequirement(requirements, "org.jkiss.a", range("2.0")));
+        assertTrue(BundleUtils.mergeRequirement(requirements, "org.jkiss.b", null));
+        assertFalse(BundleUtils.mergeRequirement(requirements, "org.jkiss.a", range("[4.0,5.0)")));
+        assertEquals(range("[2.0,3.0)"), requirements.get("org.jkiss.a"));
+        assertNull(requirements.get("org.jkiss.b"));
+    }
+
+    private static VersionRange range(String text) {
+        return VersionRange.fromString(text);
+    }
+}